@@ -0,0 +1,35 @@
+package com.philipp_mandler.hexapod.hexapod.net;
+
+public class MetricsPackage implements NetPackage {
+
+	private static final long serialVersionUID = 4410934412570931187L;
+
+	private long m_timestamp;
+	private int m_layout;
+	private String[] m_names;
+	private float[] m_values;
+
+	public MetricsPackage(long timestamp, int layout, String[] names, float[] values) {
+		// names are only sent if the client doesn't know the layout yet, otherwise null
+		m_timestamp = timestamp;
+		m_layout = layout;
+		m_names = names;
+		m_values = values;
+	}
+
+	public long getTimestamp() {
+		return m_timestamp;
+	}
+
+	public int getLayout() {
+		return m_layout;
+	}
+
+	public String[] getNames() {
+		return m_names;
+	}
+
+	public float[] getValues() {
+		return m_values;
+	}
+}
@@ -2,49 +2,124 @@ package com.philipp_mandler.hexapod.hexapod.orientation;
 
 import com.philipp_mandler.hexapod.hexapod.Vec3i;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 
 public class Chunk implements Serializable {
 	private static final long serialVersionUID = -1847003701665879783L;
 
-	private boolean m_blocks[][][] = new boolean[64][64][64];
+	// serialized as boolean[64][64][64] like before, so old and new chunks can be exchanged
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("m_blocks", boolean[][][].class),
+			new ObjectStreamField("m_origin", Vec3i.class)
+	};
+
+	public final static int SIZE = 64;
+	public final static int WORDS = SIZE * SIZE;
+
+	// one word per column, the word index is x * 64 + z and bit y is the block at height y
+	private long[] m_words = new long[WORDS];
 	private Vec3i m_origin = new Vec3i();
 
 	public Chunk() {
-		for(int x = 0; x < 64; x++) {
-			for(int y = 0; y < 64; y++) {
-				for(int z = 0; z < 64; z++) {
-					m_blocks[x][y][z] = false;
-				}
-			}
-		}
+
 	}
 
 	public Chunk(Vec3i origin) {
 		m_origin = origin;
-		for(int x = 0; x < 64; x++) {
-			for(int y = 0; y < 64; y++) {
-				for(int z = 0; z < 64; z++) {
-					m_blocks[x][y][z] = false;
-				}
-			}
-		}
 	}
 
 	public boolean[][][] getBlocks() {
-		return m_blocks;
+		// a copy, changes aren't written back
+		return toBooleans(m_words);
+	}
+
+	public long[] getWords() {
+		return m_words;
 	}
 
 	public void clear() {
-		m_blocks = new boolean[64][64][64];
+		Arrays.fill(m_words, 0);
+	}
+
+	public boolean isEmpty() {
+		for(long word : m_words) {
+			if(word != 0)
+				return false;
+		}
+		return true;
 	}
 
 	public void setBlock(Vec3i pos, boolean solid) {
-		m_blocks[pos.getX()][pos.getY()][pos.getZ()] = solid;
+		setBlock(pos.getX(), pos.getY(), pos.getZ(), solid);
 	}
 
 	public boolean getBlock(Vec3i pos) {
-		return m_blocks[pos.getX()][pos.getY()][pos.getZ()];
+		return getBlock(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	public void setBlock(int x, int y, int z, boolean solid) {
+		checkBounds(x, y, z);
+		if(solid)
+			m_words[x * SIZE + z] |= 1L << y;
+		else
+			m_words[x * SIZE + z] &= ~(1L << y);
+	}
+
+	public boolean getBlock(int x, int y, int z) {
+		checkBounds(x, y, z);
+		return (m_words[x * SIZE + z] & (1L << y)) != 0;
+	}
+
+	private static void checkBounds(int x, int y, int z) {
+		// shifts wrap around and x/z could point into another column, the boolean array threw here
+		if((x | y | z) < 0 || x >= SIZE || y >= SIZE || z >= SIZE)
+			throw new ArrayIndexOutOfBoundsException("Block (" + x + ", " + y + ", " + z + ") is outside of the chunk.");
+	}
+
+	public long getColumn(int x, int z) {
+		return m_words[x * SIZE + z];
+	}
+
+	public void setColumn(int x, int z, long column) {
+		m_words[x * SIZE + z] = column;
+	}
+
+	public int getLowestBlock(int x, int z) {
+		// -1 if the column is empty
+		long column = m_words[x * SIZE + z];
+		return column == 0 ? -1 : Long.numberOfTrailingZeros(column);
+	}
+
+	public int getHighestBlock(int x, int z) {
+		// -1 if the column is empty
+		return 63 - Long.numberOfLeadingZeros(m_words[x * SIZE + z]);
+	}
+
+	public int getBlockCount() {
+		int count = 0;
+		for(long word : m_words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	public void or(Chunk chunk) {
+		long[] words = chunk.m_words;
+		for(int i = 0; i < WORDS; i++) {
+			m_words[i] |= words[i];
+		}
+	}
+
+	public void andNot(Chunk chunk) {
+		long[] words = chunk.m_words;
+		for(int i = 0; i < WORDS; i++) {
+			m_words[i] &= ~words[i];
+		}
 	}
 
 	public void setOrigin(Vec3i origin) {
@@ -54,4 +129,45 @@ public class Chunk implements Serializable {
 	public Vec3i getOrigin() {
 		return m_origin;
 	}
+
+	public static boolean[][][] toBooleans(long[] words) {
+		boolean[][][] blocks = new boolean[SIZE][SIZE][SIZE];
+		for(int x = 0; x < SIZE; x++) {
+			for(int z = 0; z < SIZE; z++) {
+				long column = words[x * SIZE + z];
+				while(column != 0) {
+					blocks[x][Long.numberOfTrailingZeros(column)][z] = true;
+					column &= column - 1;
+				}
+			}
+		}
+		return blocks;
+	}
+
+	public static long[] fromBooleans(boolean[][][] blocks) {
+		long[] words = new long[WORDS];
+		for(int x = 0; x < SIZE; x++) {
+			for(int y = 0; y < SIZE; y++) {
+				for(int z = 0; z < SIZE; z++) {
+					if(blocks[x][y][z])
+						words[x * SIZE + z] |= 1L << y;
+				}
+			}
+		}
+		return words;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("m_blocks", toBooleans(m_words));
+		fields.put("m_origin", m_origin);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		boolean[][][] blocks = (boolean[][][]) fields.get("m_blocks", null);
+		m_words = blocks != null ? fromBooleans(blocks) : new long[WORDS];
+		m_origin = (Vec3i) fields.get("m_origin", new Vec3i());
+	}
 }
@@ -6,39 +6,87 @@ import java.util.ArrayList;
 
 public class ChunkManager {
 
-	private ArrayList<Chunk> m_chunks = new ArrayList<>();
+	// chunk coordinates are hashed in 21 bits each, the origin of a chunk is compared on every hit
+	private final static int COORDINATE_BITS = 21;
+	private final static long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+	private final static int INITIAL_CAPACITY = 64;
 
-	public void setBlock(Vec3i pos, boolean solid) {
+	private ArrayList<Chunk> m_chunks = new ArrayList<>();
 
-		Vec3i chunkOrigin = new Vec3i(pos.getX() / 64, pos.getY() / 64, pos.getZ() / 64);
+	// open addressing table with linear probing, the capacity is a power of two and at most half full
+	private long[] m_keys = new long[INITIAL_CAPACITY];
+	private Chunk[] m_values = new Chunk[INITIAL_CAPACITY];
 
-		if(pos.getX() < 0)
-			chunkOrigin.setX(chunkOrigin.getX() - 1);
+	// neighbouring lookups mostly hit the same chunk
+	private Chunk m_lastChunk;
 
-		if(pos.getY() < 0)
-			chunkOrigin.setY(chunkOrigin.getY() - 1);
+	public void setBlock(Vec3i pos, boolean solid) {
+		setBlock(pos.getX(), pos.getY(), pos.getZ(), solid);
+	}
 
-		if(pos.getZ() < 0)
-			chunkOrigin.setZ(chunkOrigin.getZ() - 1);
+	public void setBlock(int x, int y, int z, boolean solid) {
+		int chunkX = toChunk(x);
+		int chunkY = toChunk(y);
+		int chunkZ = toChunk(z);
 
-		Chunk destinationChunk = null;
-		for(Chunk chunk : m_chunks) {
-			if(chunk.getOrigin().equals(chunkOrigin)) {
-				destinationChunk = chunk;
-				break;
-			}
-		}
+		Chunk destinationChunk = getChunkAt(chunkX, chunkY, chunkZ);
 
 		if(destinationChunk == null) {
-			destinationChunk = new Chunk(chunkOrigin);
+			destinationChunk = new Chunk(new Vec3i(chunkX, chunkY, chunkZ));
 			m_chunks.add(destinationChunk);
+			put(pack(chunkX, chunkY, chunkZ), destinationChunk);
 		}
 
-		destinationChunk.setBlock(new Vec3i(superModulo(pos.getX(), 64), superModulo(pos.getY(), 64), superModulo(pos.getZ(), 64)), solid);
+		destinationChunk.setBlock(x & 63, y & 63, z & 63, solid);
 	}
 
-	private int superModulo(int a, int b) {
-		return (a % b + b) % b;
+	public static int toChunk(int a) {
+		// rounds down, -64 is in chunk -1 at local position 0
+		return a >> 6;
+	}
+
+	private static long pack(int x, int y, int z) {
+		return ((x & COORDINATE_MASK) << (COORDINATE_BITS * 2)) | ((y & COORDINATE_MASK) << COORDINATE_BITS) | (z & COORDINATE_MASK);
+	}
+
+	private static int hash(long key) {
+		// spreads the packed coordinates, neighbouring chunks differ only in a few bits
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	private void put(long key, Chunk chunk) {
+		if((m_chunks.size() * 2) > m_keys.length)
+			resize(m_keys.length * 2);
+
+		int mask = m_keys.length - 1;
+		int index = hash(key) & mask;
+		while(m_values[index] != null) {
+			index = (index + 1) & mask;
+		}
+		m_keys[index] = key;
+		m_values[index] = chunk;
+
+		m_lastChunk = chunk;
+	}
+
+	private void resize(int capacity) {
+		long[] keys = m_keys;
+		Chunk[] values = m_values;
+		m_keys = new long[capacity];
+		m_values = new Chunk[capacity];
+
+		int mask = capacity - 1;
+		for(int i = 0; i < keys.length; i++) {
+			if(values[i] != null) {
+				int index = hash(keys[i]) & mask;
+				while(m_values[index] != null) {
+					index = (index + 1) & mask;
+				}
+				m_keys[index] = keys[i];
+				m_values[index] = values[i];
+			}
+		}
 	}
 
 	public ArrayList<Chunk> getChunks() {
@@ -46,44 +94,67 @@ public class ChunkManager {
 	}
 
 	public Chunk getChunkAt(Vec3i pos) {
-		for(Chunk chunk : m_chunks) {
-			if(chunk.getOrigin().equals(pos))
+		return getChunkAt(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	public Chunk getChunkAt(int x, int y, int z) {
+		if(m_lastChunk != null && isAt(m_lastChunk, x, y, z))
+			return m_lastChunk;
+
+		long key = pack(x, y, z);
+		int mask = m_keys.length - 1;
+		int index = hash(key) & mask;
+		Chunk chunk;
+		while((chunk = m_values[index]) != null) {
+			if(m_keys[index] == key && isAt(chunk, x, y, z)) {
+				m_lastChunk = chunk;
 				return chunk;
+			}
+			index = (index + 1) & mask;
 		}
 
 		return null;
 	}
 
-	public boolean getBlock(Vec3i pos) {
-
-		Vec3i chunkOrigin = new Vec3i(pos.getX() / 64, pos.getY() / 64, pos.getZ() / 64);
-
-		if(pos.getX() < 0)
-			chunkOrigin.setX(chunkOrigin.getX() - 1);
-
-		if(pos.getY() < 0)
-			chunkOrigin.setY(chunkOrigin.getY() - 1);
+	private static boolean isAt(Chunk chunk, int x, int y, int z) {
+		Vec3i origin = chunk.getOrigin();
+		return origin.getX() == x && origin.getY() == y && origin.getZ() == z;
+	}
 
-		if(pos.getZ() < 0)
-			chunkOrigin.setZ(chunkOrigin.getZ() - 1);
+	public boolean getBlock(Vec3i pos) {
+		return getBlock(pos.getX(), pos.getY(), pos.getZ());
+	}
 
-		Chunk sourceChunk = null;
-		for(Chunk chunk : m_chunks) {
-			if(chunk.getOrigin().equals(chunkOrigin)) {
-				sourceChunk = chunk;
-				break;
-			}
-		}
+	public boolean getBlock(int x, int y, int z) {
+		Chunk sourceChunk = getChunkAt(toChunk(x), toChunk(y), toChunk(z));
 
 		if(sourceChunk == null) {
 			return false;
 		}
 
-		return sourceChunk.getBlock(new Vec3i(superModulo(pos.getX(), 64), superModulo(pos.getY(), 64), superModulo(pos.getZ(), 64)));
+		return sourceChunk.getBlock(x & 63, y & 63, z & 63);
+	}
+
+	public void or(ChunkManager chunks) {
+		// missing chunks are taken over instead of copied, chunks shouldn't be used afterwards
+		for(Chunk chunk : chunks.getChunks()) {
+			Vec3i origin = chunk.getOrigin();
+			Chunk destinationChunk = getChunkAt(origin.getX(), origin.getY(), origin.getZ());
+			if(destinationChunk == null) {
+				m_chunks.add(chunk);
+				put(pack(origin.getX(), origin.getY(), origin.getZ()), chunk);
+			}
+			else {
+				destinationChunk.or(chunk);
+			}
+		}
 	}
 
 	public void clear() {
 		m_chunks.clear();
+		m_keys = new long[INITIAL_CAPACITY];
+		m_values = new Chunk[INITIAL_CAPACITY];
+		m_lastChunk = null;
 	}
 
 }
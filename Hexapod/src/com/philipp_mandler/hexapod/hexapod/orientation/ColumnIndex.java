@@ -0,0 +1,162 @@
+package com.philipp_mandler.hexapod.hexapod.orientation;
+
+import com.philipp_mandler.hexapod.hexapod.Vec3i;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class ColumnIndex {
+
+	// the solid blocks of every x/z column as sorted spans of heights
+	// only the stack of chunks above the lowest chunk of a chunk column is indexed, it ends at the first missing chunk
+
+	private final ArrayList<ChunkColumn> m_columns = new ArrayList<>();
+	private final HashMap<Long, ChunkColumn> m_columnsByOrigin = new HashMap<>();
+
+	public static class ChunkColumn {
+		private final int m_x;
+		private final int m_z;
+		private final int m_index;
+		private int m_bottom;
+		private int m_top;
+
+		// spans of column x * 64 + z are m_spans[m_offsets[column] .. m_offsets[column + 1]], each as first and last height
+		private final int[] m_offsets = new int[Chunk.WORDS + 1];
+		private int[] m_spans = new int[256];
+		private final ChunkColumn[] m_neighbours = new ChunkColumn[9];
+
+		ChunkColumn(int x, int z, int bottom, int index) {
+			m_x = x;
+			m_z = z;
+			m_bottom = bottom;
+			m_index = index;
+		}
+
+		public int getX() {
+			return m_x;
+		}
+
+		public int getZ() {
+			return m_z;
+		}
+
+		public int getIndex() {
+			// position in getChunkColumns()
+			return m_index;
+		}
+
+		public int getBottom() {
+			// chunk coordinate of the lowest chunk
+			return m_bottom;
+		}
+
+		public int getTop() {
+			// chunk coordinate of the highest chunk without a gap below
+			return m_top;
+		}
+
+		public ChunkColumn getNeighbour(int x, int z) {
+			// the chunk column next to this one, x and z are -1, 0 or 1
+			return m_neighbours[(x + 1) * 3 + z + 1];
+		}
+
+		public int getSpanCount(int x, int z) {
+			int column = x * Chunk.SIZE + z;
+			return (m_offsets[column + 1] - m_offsets[column]) / 2;
+		}
+
+		public int getSpanStart(int x, int z, int span) {
+			// lowest global height of the span
+			return m_spans[m_offsets[x * Chunk.SIZE + z] + span * 2];
+		}
+
+		public int getSpanEnd(int x, int z, int span) {
+			// highest global height of the span, inclusive
+			return m_spans[m_offsets[x * Chunk.SIZE + z] + span * 2 + 1];
+		}
+
+		private void build(Chunk[] stack) {
+			int count = 0;
+			for(int column = 0; column < Chunk.WORDS; column++) {
+				m_offsets[column] = count;
+				boolean open = false;
+
+				for(int i = 0; i < stack.length; i++) {
+					long word = stack[i].getWords()[column];
+					int base = (m_bottom + i) * Chunk.SIZE;
+					while(word != 0) {
+						int start = Long.numberOfTrailingZeros(word);
+						int length = Long.numberOfTrailingZeros(~(word >>> start));
+						int end = start + length;
+
+						if(open && start == 0 && m_spans[count - 1] == base - 1) {
+							// the span continues from the chunk below
+							m_spans[count - 1] = base + end - 1;
+						}
+						else {
+							if(count + 2 > m_spans.length)
+								m_spans = Arrays.copyOf(m_spans, m_spans.length * 2);
+							m_spans[count++] = base + start;
+							m_spans[count++] = base + end - 1;
+						}
+
+						word = end == Chunk.SIZE ? 0 : word & (-1L << end);
+						open = end == Chunk.SIZE;
+					}
+					if(stack[i].getWords()[column] == 0)
+						open = false;
+				}
+			}
+			m_offsets[Chunk.WORDS] = count;
+		}
+	}
+
+	public ColumnIndex(ChunkManager chunks) {
+		for(Chunk chunk : chunks.getChunks()) {
+			Vec3i origin = chunk.getOrigin();
+			Long key = pack(origin.getX(), origin.getZ());
+			ChunkColumn column = m_columnsByOrigin.get(key);
+			if(column == null) {
+				column = new ChunkColumn(origin.getX(), origin.getZ(), origin.getY(), m_columns.size());
+				m_columns.add(column);
+				m_columnsByOrigin.put(key, column);
+			}
+			else if(origin.getY() < column.m_bottom) {
+				column.m_bottom = origin.getY();
+			}
+		}
+
+		ArrayList<Chunk> stack = new ArrayList<>();
+		for(ChunkColumn column : m_columns) {
+			stack.clear();
+			Chunk chunk;
+			int y = column.m_bottom;
+			while((chunk = chunks.getChunkAt(column.m_x, y, column.m_z)) != null) {
+				stack.add(chunk);
+				y++;
+			}
+			column.m_top = y - 1;
+			column.build(stack.toArray(new Chunk[stack.size()]));
+
+			for(int x = -1; x <= 1; x++) {
+				for(int z = -1; z <= 1; z++) {
+					column.m_neighbours[(x + 1) * 3 + z + 1] = getChunkColumn(column.m_x + x, column.m_z + z);
+				}
+			}
+		}
+	}
+
+	private static long pack(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	public ArrayList<ChunkColumn> getChunkColumns() {
+		return m_columns;
+	}
+
+	public ChunkColumn getChunkColumn(int x, int z) {
+		// chunk coordinates, null if there are no blocks
+		return m_columnsByOrigin.get(pack(x, z));
+	}
+}
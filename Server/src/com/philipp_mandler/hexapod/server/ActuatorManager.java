@@ -5,7 +5,6 @@ import gnu.io.PortInUseException;
 import gnu.io.UnsupportedCommOperationException;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class ActuatorManager {
 
@@ -15,6 +14,14 @@ public class ActuatorManager {
 
 	private SingleServo[] m_kinectServos = new SingleServo[2];
 
+	// fixed table of all servos that are updated by the sync write
+	private SingleServo[] m_syncServos = new SingleServo[20];
+	private int[] m_syncIDs = new int[20];
+	private int[] m_syncValues = new int[20];
+	private int m_goalDeadband = 0;
+
+	private BusScheduler m_busScheduler;
+
 	public ActuatorManager(String serialPort, int baudRate) {
 
 		// connect to serial port
@@ -25,14 +32,88 @@ public class ActuatorManager {
 			e.printStackTrace();
 		}
 
+		// find all servos at once
+		if(m_servoController.initialized()) {
+			int[] servos = m_servoController.discover(1, 20);
+			DebugHelper.log("Found " + servos.length + " of 20 servos at once.");
+		}
+
 		// initialize leg servos
 		for(int i = 0; i < 18; i++) {
 			m_legServos[i] = new SingleServo(m_servoController, i + 1, true, 4096, Data.servoAngleOffsets[i]);
 		}
 
 		// initialize Kinect servos
-		m_kinectServos[0] = new SingleServo(m_servoController, 19, false, 1024, 0.2, 0.104);
-		m_kinectServos[1] = new SingleServo(m_servoController, 20, false, 1024, 0.1, 0.104);
+		m_kinectServos[0] = new SingleServo(m_servoController, 19, true, 1024, 0.2, 0.104);
+		m_kinectServos[1] = new SingleServo(m_servoController, 20, true, 1024, 0.1, 0.104);
+
+		System.arraycopy(m_legServos, 0, m_syncServos, 0, 18);
+		System.arraycopy(m_kinectServos, 0, m_syncServos, 18, 2);
+
+		// servos missed by the discovery were pinged once more
+		if(m_servoController.initialized()) {
+			int connected = 0;
+			for(SingleServo servo : m_syncServos) {
+				if(servo.isConnected())
+					connected++;
+			}
+			DebugHelper.log("Connected to " + connected + " of 20 servos.");
+		}
+
+		// the scheduler owns the bus from now on
+		m_busScheduler = new BusScheduler(this);
+		m_busScheduler.start();
+	}
+
+	public void registerMetrics(MetricsRegistry registry) {
+		registry.counter("hexapod_serial_sent_bytes_total", null, "Bytes sent to the servo bus.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return m_servoController.getBytesSent();
+			}
+		});
+		registry.counter("hexapod_serial_received_bytes_total", null, "Bytes received from the servo bus.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return m_servoController.getBytesReceived();
+			}
+		});
+		registry.counter("hexapod_bus_cycles_total", null, "Servo bus cycles.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return m_busScheduler.getCycleCount();
+			}
+		});
+		registry.counter("hexapod_bus_skipped_cycles_total", null, "Servo bus cycles skipped because of overruns.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return m_busScheduler.getSkippedCycles();
+			}
+		});
+		registry.gauge("hexapod_bus_queue_depth", null, "Requests waiting for the servo bus.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return m_busScheduler.getQueueSize();
+			}
+		});
+		registry.histogram("hexapod_bus_cycle_duration_seconds", null, "Duration of a servo bus cycle.", m_busScheduler.getCycleTime());
+
+		for(SingleServo servo : m_syncServos) {
+			registry.histogram("hexapod_servo_read_latency_seconds", "id=\"" + servo.getID() + "\"", "Round-trip time of single servo reads.", m_servoController.getReadLatency(servo.getID()));
+		}
+	}
+
+	public void shutdown() {
+		m_busScheduler.stop();
+		m_servoController.close();
+	}
+
+	public BusScheduler getBusScheduler() {
+		return m_busScheduler;
+	}
+
+	public ServoController getServoController() {
+		return m_servoController;
 	}
 
 	public int getServoID(int legID, int servoPos) {
@@ -57,30 +138,39 @@ public class ActuatorManager {
 		return null;
 	}
 
-	public void syncUpdateLegServos() {
-		// update all leg servos at once
-		ArrayList<Integer> values = new ArrayList<>();
-		ArrayList<Integer> ids = new ArrayList<>();
-
-		for(SingleServo servo : m_legServos) {
-			if(servo.isConnected()) {
-				ids.add(servo.getID());
-				values.add(servo.getPosValue());
+	public void syncUpdateServos() {
+		// update all changed leg and Kinect servos at once, without allocating anything
+		int count = 0;
+		for(SingleServo servo : m_syncServos) {
+			if(servo.isConnected() && servo.isGoalDirty(m_goalDeadband)) {
+				int goal = servo.getPosValue();
+				m_syncIDs[count] = servo.getID();
+				m_syncValues[count] = goal;
+				servo.markGoalSent(goal);
+				count++;
 			}
 		}
 
-		int[] valueArray = new int[values.size()];
-		int[] idArray = new int[ids.size()];
+		// nothing changed, keep the bus free
+		if(count == 0)
+			return;
 
-		for(int i = 0; i < ids.size(); i++) {
-			idArray[i] = ids.get(i);
-		}
+		m_servoController.syncWriteWords(ServoController.DX_CMD_GOAL_POS, m_syncIDs, m_syncValues, count);
+	}
 
-		for(int i = 0; i < values.size(); i++) {
-			valueArray[i] = values.get(i);
+	public void invalidateGoals() {
+		// resend every goal position with the next sync write
+		for(SingleServo servo : m_syncServos) {
+			servo.invalidateGoal();
 		}
+	}
+
+	public void setGoalDeadband(int ticks) {
+		m_goalDeadband = ticks;
+	}
 
-		m_servoController.syncWriteGoalPosition(idArray, valueArray);
+	public int getGoalDeadband() {
+		return m_goalDeadband;
 	}
 
 }
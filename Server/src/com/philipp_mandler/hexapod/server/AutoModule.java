@@ -23,16 +23,17 @@ public class AutoModule extends Module {
 
 	public AutoModule() {
 		super.setName("auto");
+		setTickRate(20);
+		dependsOn("vision");
+		dependsOn("mobility");
 	}
 
 	@Override
 	protected void onStart() {
 
-		m_visionModule = (VisionModule)Main.getModuleManager().getModule("vision");
-		m_mobilityModule = (MobilityModule)Main.getModuleManager().getModule("mobility");
-
-		if(!m_visionModule.isRunning()) m_visionModule.start();
-		if(!m_mobilityModule.isRunning()) m_mobilityModule.start();
+		// both are started by the module manager before this module
+		m_visionModule = Main.getModuleManager().getModule(VisionModule.class);
+		m_mobilityModule = Main.getModuleManager().getModule(MobilityModule.class);
 
 		m_mobilityModule.lift();
 
@@ -5,18 +5,51 @@ import com.philipp_mandler.hexapod.hexapod.net.BatteryPackage;
 import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 import com.philipp_mandler.hexapod.hexapod.net.NotificationPackage;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class BatteryModule extends Module {
 
-	private SingleServo m_servo = Main.getActuatorManager().getLegServo(0, 0);
-	private Time m_time = new Time();
+	private final ActuatorManager m_actuators;
+	private final SingleServo m_servo;
+
+	// the bus thread only hands over the reading, it is published by the next tick
+	private volatile double m_reading = Double.NaN;
+	private AtomicBoolean m_pending = new AtomicBoolean(false);
+
+	private BusRequest m_request = new BusRequest(BusRequest.PRIORITY_LOW) {
+		@Override
+		protected void execute(ServoController controller) {
+			try {
+				m_reading = m_servo.getCurrentVoltage();
+			} finally {
+				m_pending.set(false);
+			}
+		}
+
+		@Override
+		protected void onExpired() {
+			m_reading = -1;
+			m_pending.set(false);
+		}
+	};
 
 	public BatteryModule() {
+		this(Main.getActuatorManager());
+	}
+
+	BatteryModule(ActuatorManager actuators) {
 		super.setName("battery");
+
+		// one reading every 10 seconds
+		setTickRate(0.1);
+
+		m_actuators = actuators;
+		m_servo = actuators.getLegServo(0, 0);
 	}
 
 	@Override
 	protected void onStart() {
-		m_time = Time.fromNanoseconds(0);
+
 	}
 
 	@Override
@@ -26,23 +59,30 @@ public class BatteryModule extends Module {
 
 	@Override
 	public void tick(long tick, Time elapsedTime) {
-		m_time = Time.fromNanoseconds(m_time.getNanoseconds() + elapsedTime.getNanoseconds());
-		if(m_time.getSeconds() > 10) {
-			m_time = Time.fromNanoseconds(0);
-			double raw = m_servo.getCurrentVoltage();
-			if(raw != -1) {
-				double charge = (raw - 10.6) / 1.6;
-				DebugHelper.log("Battery: " + charge);
-				Main.getNetworking().broadcast(new BatteryPackage(charge));
-				if(charge < 0.1) {
-					Main.getNetworking().broadcast(new NotificationPackage("Low Battery!"));
-				}
-			}
-			else {
-				DebugHelper.log("Battery: unknown");
-				Main.getNetworking().broadcast(new BatteryPackage(-1));
+		double reading = m_reading;
+		if(!Double.isNaN(reading)) {
+			m_reading = Double.NaN;
+			publish(reading);
+		}
+
+		// read the voltage in a free slot of the bus scheduler instead of blocking the tick, once the last request has been handled
+		if(m_pending.compareAndSet(false, true))
+			m_actuators.getBusScheduler().submit(m_request, 1000000000L);
+	}
+
+	private void publish(double raw) {
+		if(raw != -1) {
+			double charge = (raw - 10.6) / 1.6;
+			DebugHelper.log("Battery: " + charge);
+			Main.getNetworking().broadcast(new BatteryPackage(charge));
+			if(charge < 0.1) {
+				Main.getNetworking().broadcast(new NotificationPackage("Low Battery!"));
 			}
 		}
+		else {
+			DebugHelper.log("Battery: unknown");
+			Main.getNetworking().broadcast(new BatteryPackage(-1));
+		}
 	}
 
 	@Override
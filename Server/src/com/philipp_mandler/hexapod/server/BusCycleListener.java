@@ -0,0 +1,7 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.EventListener;
+
+public interface BusCycleListener extends EventListener {
+	public void onBusCycle(long cycle);
+}
@@ -0,0 +1,34 @@
+package com.philipp_mandler.hexapod.server;
+
+public abstract class BusRequest {
+
+	public final static int PRIORITY_HIGH = 0;
+	public final static int PRIORITY_NORMAL = 1;
+	public final static int PRIORITY_LOW = 2;
+
+	private int m_priority;
+	private volatile long m_deadline;
+
+	public BusRequest(int priority) {
+		m_priority = priority;
+	}
+
+	public int getPriority() {
+		return m_priority;
+	}
+
+	public void setDeadline(long deadline) {
+		// absolute System.nanoTime() value after which the request is dropped
+		m_deadline = deadline;
+	}
+
+	public long getDeadline() {
+		return m_deadline;
+	}
+
+	protected abstract void execute(ServoController controller);
+
+	protected void onExpired() {
+
+	}
+}
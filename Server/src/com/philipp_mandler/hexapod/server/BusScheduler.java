@@ -0,0 +1,176 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+public class BusScheduler {
+
+	private ActuatorManager m_actuators;
+	private ServoController m_controller;
+
+	private List<BusCycleListener> m_listeners = new CopyOnWriteArrayList<>();
+	private PriorityBlockingQueue<BusRequest> m_requests;
+
+	private long m_period = 20000000L; // 20 ms, 50 Hz
+	private long m_readBudget = 15000000L; // reads have to be done 15 ms after the cycle started
+	private volatile boolean m_running = false;
+	private Thread m_thread;
+	private volatile long m_cycle = 0;
+	private volatile long m_skippedCycles = 0;
+	private final LatencyHistogram m_cycleTime = new LatencyHistogram();
+
+	public BusScheduler(ActuatorManager actuators) {
+		m_actuators = actuators;
+		m_controller = actuators.getServoController();
+
+		// high priority first, earliest deadline first within one priority
+		m_requests = new PriorityBlockingQueue<>(32, new Comparator<BusRequest>() {
+			@Override
+			public int compare(BusRequest a, BusRequest b) {
+				if(a.getPriority() != b.getPriority())
+					return a.getPriority() < b.getPriority() ? -1 : 1;
+				if(a.getDeadline() != b.getDeadline())
+					return a.getDeadline() < b.getDeadline() ? -1 : 1;
+				return 0;
+			}
+		});
+	}
+
+	public void start() {
+		if(m_running) return;
+		m_running = true;
+
+		m_thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long cycleStart = System.nanoTime();
+				while(m_running) {
+					runCycle(cycleStart);
+
+					// wait for the next cycle, skip cycles that are already over
+					long now = System.nanoTime();
+					m_cycleTime.record(now - cycleStart);
+					cycleStart += m_period;
+					if(cycleStart < now) {
+						m_skippedCycles += (now - cycleStart) / m_period + 1;
+						cycleStart = now;
+					}
+					while(m_running && (now = System.nanoTime()) < cycleStart) {
+						LockSupport.parkNanos(cycleStart - now);
+					}
+				}
+			}
+		});
+		m_thread.setName("Servo bus scheduler");
+		m_thread.setPriority(Thread.MAX_PRIORITY);
+		m_thread.start();
+	}
+
+	public void stop() {
+		// waits for the current cycle, so the bus can be closed afterwards
+		m_running = false;
+		Thread thread = m_thread;
+		if(thread == null || thread == Thread.currentThread())
+			return;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return m_running;
+	}
+
+	private void runCycle(long cycleStart) {
+		// let the clients update their goal positions
+		// a failing listener or request must not stop the bus
+		for(BusCycleListener listener : m_listeners) {
+			try {
+				listener.onBusCycle(m_cycle);
+			} catch (Exception e) {
+				DebugHelper.log(e);
+			}
+		}
+
+		// one sync write for all servos
+		try {
+			m_actuators.syncUpdateServos();
+		} catch (Exception e) {
+			DebugHelper.log(e);
+		}
+
+		// use the rest of the budget for queued requests
+		long budgetEnd = cycleStart + m_readBudget;
+		long now;
+		while((now = System.nanoTime()) < budgetEnd) {
+			BusRequest request = m_requests.poll();
+			if(request == null)
+				break;
+
+			try {
+				if(request.getDeadline() < now)
+					request.onExpired();
+				else
+					request.execute(m_controller);
+			} catch (Exception e) {
+				DebugHelper.log(e);
+			}
+		}
+
+		m_cycle++;
+	}
+
+	public void submit(BusRequest request, long timeout) {
+		// queue a request that has to be executed within timeout nanoseconds
+		request.setDeadline(System.nanoTime() + timeout);
+		m_requests.add(request);
+	}
+
+	public void addCycleListener(BusCycleListener listener) {
+		if(!m_listeners.contains(listener))
+			m_listeners.add(listener);
+	}
+
+	public void removeCycleListener(BusCycleListener listener) {
+		m_listeners.remove(listener);
+	}
+
+	public void setPeriod(long period) {
+		m_period = period;
+	}
+
+	public long getPeriod() {
+		return m_period;
+	}
+
+	public void setReadBudget(long readBudget) {
+		m_readBudget = readBudget;
+	}
+
+	public long getReadBudget() {
+		return m_readBudget;
+	}
+
+	public long getCycleCount() {
+		return m_cycle;
+	}
+
+	public long getSkippedCycles() {
+		return m_skippedCycles;
+	}
+
+	public LatencyHistogram getCycleTime() {
+		// time from the planned cycle start until the cycle is done
+		return m_cycleTime;
+	}
+
+	public int getQueueSize() {
+		return m_requests.size();
+	}
+}
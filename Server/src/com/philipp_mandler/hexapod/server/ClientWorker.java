@@ -133,6 +133,10 @@ public class ClientWorker extends Thread {
 		m_outQueue.add(pack);
 	}
 	
+	public int getQueueSize() {
+		return m_outQueue.size();
+	}
+
 	public DeviceType getDeviceType() {
 		return deviceType;
 	}
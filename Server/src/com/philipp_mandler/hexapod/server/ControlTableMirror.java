@@ -0,0 +1,119 @@
+package com.philipp_mandler.hexapod.server;
+
+class ControlTableMirror {
+
+	// control table up to the punch register
+	public final static int SIZE = 0x32;
+
+	private final int[][] m_values = new int[ServoController.DX_BROADCAST_ID][];
+	private final boolean[][] m_valid = new boolean[ServoController.DX_BROADCAST_ID][];
+	private final long[][] m_timestamps = new long[ServoController.DX_BROADCAST_ID][];
+
+	private long m_maxAge = 20000000L; // 20 ms for present values
+	private boolean m_enabled = true;
+
+	public static boolean isVolatile(int address) {
+		// values the servo changes on its own
+		switch (address) {
+			case ServoController.DX_CMD_TORQUE_ENABLE:
+			case ServoController.DX_CMD_LIMIT_TORQUE:
+			case ServoController.DX_CMD_LIMIT_TORQUE + 1:
+				// cleared by the alarm shutdown
+				return true;
+			default:
+				return address >= ServoController.DX_CMD_PRESENT_POS && address <= ServoController.DX_CMD_MOVING;
+		}
+	}
+
+	public int get(int id, int address, int length, long now) {
+		// returns -1 if the value has to be read from the servo
+		if (!m_enabled || !inRange(id, address, length) || m_values[id] == null)
+			return -1;
+
+		int value = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			int addr = address + i;
+			if (!m_valid[id][addr])
+				return -1;
+			if (isVolatile(addr) && now - m_timestamps[id][addr] > m_maxAge)
+				return -1;
+			value = (value << 8) + m_values[id][addr];
+		}
+		return value;
+	}
+
+	public void put(int id, int address, int length, int value, long now) {
+		// store a little endian value
+		if (!inRange(id, address, length))
+			return;
+		allocate(id);
+		for (int i = 0; i < length; i++) {
+			m_values[id][address + i] = (value >> (8 * i)) & 0xFF;
+			m_valid[id][address + i] = true;
+			m_timestamps[id][address + i] = now;
+		}
+	}
+
+	public void put(int id, int address, ReturnPacket packet, long now) {
+		// store the parameters of a read reply
+		int length = packet.getParamCount();
+		if (!inRange(id, address, length))
+			return;
+		allocate(id);
+		for (int i = 0; i < length; i++) {
+			m_values[id][address + i] = packet.getParam(i);
+			m_valid[id][address + i] = true;
+			m_timestamps[id][address + i] = now;
+		}
+	}
+
+	public void invalidate(int id, int address, int length) {
+		if (!inRange(id, address, length) || m_valid[id] == null)
+			return;
+		for (int i = 0; i < length; i++) {
+			m_valid[id][address + i] = false;
+		}
+	}
+
+	public void invalidate(int id) {
+		if (id < 0 || id >= m_valid.length || m_valid[id] == null)
+			return;
+		for (int i = 0; i < SIZE; i++) {
+			m_valid[id][i] = false;
+		}
+	}
+
+	public void invalidateAll() {
+		for (int id = 0; id < m_valid.length; id++) {
+			invalidate(id);
+		}
+	}
+
+	public void setMaxAge(long maxAge) {
+		m_maxAge = maxAge;
+	}
+
+	public long getMaxAge() {
+		return m_maxAge;
+	}
+
+	public void setEnabled(boolean enabled) {
+		m_enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return m_enabled;
+	}
+
+	private boolean inRange(int id, int address, int length) {
+		return id >= 0 && id < m_values.length && address >= 0 && address + length <= SIZE;
+	}
+
+	private void allocate(int id) {
+		if (m_values[id] == null) {
+			m_values[id] = new int[SIZE];
+			m_valid[id] = new boolean[SIZE];
+			m_timestamps[id] = new long[SIZE];
+		}
+	}
+}
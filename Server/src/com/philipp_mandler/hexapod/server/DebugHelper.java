@@ -1,25 +1,196 @@
 package com.philipp_mandler.hexapod.server;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 import com.philipp_mandler.hexapod.hexapod.net.ConsolePackage;
 
 public class DebugHelper {
-	// storage for all log entries
-	static List<Log> m_logs = new ArrayList<>();
-	
+
+	// messages are handed to a background thread, logging never blocks the caller
+	private final static LogQueue m_queue = new LogQueue(4096);
+	private final static long DRAIN_PERIOD = 10000000L; // 10 ms
+	private final static long REPEAT_INTERVAL = 5000; // 5 s
+
+	private static volatile int m_level = Log.INFO;
+	private static volatile boolean m_running = true;
+	private static volatile boolean m_console = true;
+	private static volatile boolean m_broadcast = true;
+
+	// bounded history of the latest entries
+	private static int m_historySize = 1000;
+	private final static ArrayDeque<Log> m_history = new ArrayDeque<>();
+
+	// repeated messages are collapsed, owned by the writer thread
+	private static String m_lastText = null;
+	private static int m_lastLevel = Log.INFO;
+	private static int m_repeats = 0;
+	private static long m_repeatStart = 0;
+
+	// rolling log file
+	private static File m_file = null;
+	private static long m_maxFileSize = 0;
+	private static int m_maxFiles = 0;
+	private static Writer m_fileWriter = null;
+	private static long m_fileSize = 0;
+	private final static SimpleDateFormat m_dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private final static Thread m_thread;
+
+	static {
+		m_thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Log log = new Log(null, Log.INFO, 0);
+				while(m_running || !m_queue.isEmpty()) {
+					boolean written = false;
+					while(m_queue.poll(log)) {
+						write(log.getText(), log.getLevel(), log.getTime());
+						written = true;
+					}
+					flushRepeats(false);
+					reportDropped();
+					if(written)
+						flushFile();
+					else if(m_running)
+						LockSupport.parkNanos(DRAIN_PERIOD);
+				}
+				flushRepeats(true);
+				closeFile();
+			}
+		}, "Log writer");
+		m_thread.setDaemon(true);
+		m_thread.setPriority(Thread.MIN_PRIORITY);
+		m_thread.start();
+	}
+
 	public static void log(String text) {
 		// default logging
 		DebugHelper.log(text, Log.INFO);
 	}
 	
 	public static void log(String text, int level) {
-		// create log with specified level
-		System.out.println(text);
-		Log log = new Log(text, level);
-		m_logs.add(log);
-		if(Main.getNetworking() != null) {
+		// queue log with specified level
+		if(level < m_level)
+			return;
+		m_queue.offer(text, level, System.currentTimeMillis());
+	}
+
+	public static void log(Exception e) {
+		// default logging
+		DebugHelper.log(e.getMessage(), Log.ERROR);
+	}
+
+	public static void setLevel(int level) {
+		// messages below this level are dropped
+		m_level = level;
+	}
+
+	public static int getLevel() {
+		return m_level;
+	}
+
+	public static void setConsoleEnabled(boolean enabled) {
+		m_console = enabled;
+	}
+
+	public static void setBroadcastEnabled(boolean enabled) {
+		m_broadcast = enabled;
+	}
+
+	public static void setHistorySize(int size) {
+		synchronized (m_history) {
+			m_historySize = size;
+			while(m_history.size() > m_historySize) {
+				m_history.removeFirst();
+			}
+		}
+	}
+
+	public static List<Log> getHistory() {
+		synchronized (m_history) {
+			return new ArrayList<>(m_history);
+		}
+	}
+
+	public static synchronized void setLogFile(String path, long maxSize, int maxFiles) throws IOException {
+		// roll over to path.1 ... path.<maxFiles> once the file reaches maxSize bytes
+		closeFile();
+		m_file = path == null ? null : new File(path);
+		m_maxFileSize = maxSize;
+		m_maxFiles = maxFiles;
+		if(m_file != null)
+			openFile();
+	}
+
+	public static void shutdown() {
+		// write everything that is still queued
+		m_running = false;
+		LockSupport.unpark(m_thread);
+		try {
+			m_thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void write(String text, int level, long time) {
+		// collapse repeated messages
+		if(m_lastText != null && m_lastLevel == level && m_lastText.equals(text)) {
+			if(m_repeats == 0)
+				m_repeatStart = time;
+			m_repeats++;
+			return;
+		}
+		flushRepeats(true);
+
+		m_lastText = text;
+		m_lastLevel = level;
+		output(text, level, time);
+	}
+
+	private static void flushRepeats(boolean force) {
+		if(m_repeats == 0)
+			return;
+		if(!force && System.currentTimeMillis() - m_repeatStart < REPEAT_INTERVAL)
+			return;
+		output("(last message repeated " + m_repeats + " times)", m_lastLevel, System.currentTimeMillis());
+		m_repeats = 0;
+	}
+
+	private static void reportDropped() {
+		long dropped = m_queue.getDropped();
+		if(dropped > 0) {
+			flushRepeats(true);
+			m_lastText = null;
+			output("(" + dropped + " log messages dropped)", Log.WARNING, System.currentTimeMillis());
+		}
+	}
+
+	private static void output(String text, int level, long time) {
+		if(m_console)
+			System.out.println(text);
+
+		synchronized (m_history) {
+			m_history.addLast(new Log(text, level, time));
+			while(m_history.size() > m_historySize) {
+				m_history.removeFirst();
+			}
+		}
+
+		writeFile(text, level, time);
+
+		if(m_broadcast && Main.getNetworking() != null) {
 			if(level == Log.INFO) {
 				Main.getNetworking().broadcast(new ConsolePackage(text));
 			}
@@ -32,10 +203,67 @@ public class DebugHelper {
 		}
 	}
 
-	public static void log(Exception e) {
-		// default logging
-		DebugHelper.log(e.getMessage(), Log.ERROR);
+	private static synchronized void writeFile(String text, int level, long time) {
+		if(m_fileWriter == null)
+			return;
+		String prefix = level == Log.ERROR ? "ERROR " : level == Log.WARNING ? "WARNING " : "INFO ";
+		String line = m_dateFormat.format(new Date(time)) + " " + prefix + text + "\n";
+		try {
+			m_fileWriter.write(line);
+			m_fileSize += line.length();
+			if(m_maxFileSize > 0 && m_fileSize >= m_maxFileSize)
+				rollFile();
+		} catch (IOException e) {
+			System.out.println("Log file: " + e.getMessage());
+			closeFile();
+			m_file = null;
+		}
 	}
 
+	private static synchronized void flushFile() {
+		if(m_fileWriter == null)
+			return;
+		try {
+			m_fileWriter.flush();
+		} catch (IOException e) {
+			System.out.println("Log file: " + e.getMessage());
+		}
+	}
+
+	private static synchronized void openFile() throws IOException {
+		m_fileWriter = new OutputStreamWriter(new FileOutputStream(m_file, true), StandardCharsets.UTF_8);
+		m_fileSize = m_file.length();
+	}
 
+	private static synchronized void closeFile() {
+		if(m_fileWriter == null)
+			return;
+		try {
+			m_fileWriter.close();
+		} catch (IOException e) {
+			System.out.println("Log file: " + e.getMessage());
+		}
+		m_fileWriter = null;
+	}
+
+	private static synchronized void rollFile() throws IOException {
+		closeFile();
+		for(int i = m_maxFiles - 1; i >= 1; i--) {
+			File from = new File(m_file.getPath() + "." + i);
+			if(from.exists()) {
+				File to = new File(m_file.getPath() + "." + (i + 1));
+				to.delete();
+				from.renameTo(to);
+			}
+		}
+		if(m_maxFiles > 0) {
+			File first = new File(m_file.getPath() + ".1");
+			first.delete();
+			m_file.renameTo(first);
+		}
+		else {
+			m_file.delete();
+		}
+		openFile();
+	}
 }
@@ -0,0 +1,82 @@
+package com.philipp_mandler.hexapod.server;
+
+public class DepthProjection {
+
+	// raw depth values of the Kinect are 11 bit, 2047 means no depth
+	public final static int DEPTH_VALUES = 2048;
+	public final static int NO_DEPTH = 2047;
+
+	// voxels are 2.5 cm
+	public final static double VOXEL_SIZE = 0.025;
+
+	private final static double MIN_DISTANCE = -10.0;
+	private final static double SCALE_FACTOR = 0.00021;
+
+	private final static DepthProjection m_kinect = new DepthProjection(KinectWorker.FRAME_WIDTH, KinectWorker.FRAME_HEIGHT);
+
+	// per raw depth value, doubles so the voxels are the same as with Math.tan on every pixel
+	private final double[] m_distances = new double[DEPTH_VALUES];
+	private final double[] m_scales = new double[DEPTH_VALUES];
+	private final int[] m_voxelDepths = new int[DEPTH_VALUES];
+
+	// offsets of the pixel rays from the image center
+	private final double[] m_columns;
+	private final double[] m_rows;
+
+	public DepthProjection(int width, int height) {
+		for(int value = 0; value < DEPTH_VALUES; value++) {
+			m_distances[value] = toDistance(value);
+			m_scales[value] = m_distances[value] + MIN_DISTANCE;
+			m_voxelDepths[value] = (int) (m_distances[value] / VOXEL_SIZE);
+		}
+
+		m_columns = new double[width];
+		for(int x = 0; x < width; x++) {
+			m_columns[x] = x - width / 2;
+		}
+		m_rows = new double[height];
+		for(int y = 0; y < height; y++) {
+			m_rows[y] = y - height / 2;
+		}
+	}
+
+	public static DepthProjection getKinect() {
+		// the tables are never changed, so every frame of the Kinect can use the same projection
+		return m_kinect;
+	}
+
+	public static double toDistance(int value) {
+		// distance in m
+		return 0.1236 * Math.tan(value / 2842.5 + 1.1863);
+	}
+
+	public boolean hasDepth(int value) {
+		return value != NO_DEPTH;
+	}
+
+	public double getDistance(int value) {
+		// values outside of 11 bit aren't in the table
+		if((value & ~(DEPTH_VALUES - 1)) != 0)
+			return toDistance(value);
+		return m_distances[value];
+	}
+
+	public int getVoxelX(int x, int value) {
+		if((value & ~(DEPTH_VALUES - 1)) != 0)
+			return (int) (m_columns[x] * (toDistance(value) + MIN_DISTANCE) * SCALE_FACTOR / VOXEL_SIZE);
+		return (int) (m_columns[x] * m_scales[value] * SCALE_FACTOR / VOXEL_SIZE);
+	}
+
+	public int getVoxelY(int y, int value) {
+		if((value & ~(DEPTH_VALUES - 1)) != 0)
+			return (int) (m_rows[y] * (toDistance(value) + MIN_DISTANCE) * SCALE_FACTOR / VOXEL_SIZE);
+		return (int) (m_rows[y] * m_scales[value] * SCALE_FACTOR / VOXEL_SIZE);
+	}
+
+	public int getVoxelZ(int value) {
+		// world z is the distance
+		if((value & ~(DEPTH_VALUES - 1)) != 0)
+			return (int) (toDistance(value) / VOXEL_SIZE);
+		return m_voxelDepths[value];
+	}
+}
@@ -0,0 +1,106 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+public class FileChannelServoBus implements ServoBus {
+
+	// serial device or pty opened as a plain file, e.g. "file:/dev/ttyUSB0"
+	// the line settings (baud rate, raw mode) have to be set up beforehand, e.g. with stty
+	public final static String PREFIX = "file:";
+
+	private final FileChannel m_input;
+	private final FileChannel m_output;
+	private final ByteBuffer m_readBuffer = ByteBuffer.allocateDirect(256);
+	private final ByteBuffer m_writeBuffer = ByteBuffer.allocateDirect(InstructionPacket.MAX_SIZE);
+	private final byte[] m_receiveBuffer = new byte[256];
+	private volatile ServoBusListener m_listener;
+	private volatile boolean m_running = true;
+	private final int m_baudRate;
+	private final Thread m_readThread;
+
+	public FileChannelServoBus(String path, int baudRate) throws IOException {
+		// separate channels, a blocking read would otherwise hold back writes
+		m_input = new FileInputStream(path).getChannel();
+		m_output = new FileOutputStream(path).getChannel();
+		m_baudRate = baudRate;
+
+		m_readThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readLoop();
+			}
+		}, "Servo bus reader");
+		m_readThread.setDaemon(true);
+		m_readThread.setPriority(Thread.MAX_PRIORITY);
+		m_readThread.start();
+	}
+
+	@Override
+	public void setListener(ServoBusListener listener) {
+		m_listener = listener;
+	}
+
+	@Override
+	public synchronized boolean write(byte[] data, int offset, int length) {
+		try {
+			while (length > 0) {
+				int count = Math.min(length, m_writeBuffer.capacity());
+				m_writeBuffer.clear();
+				m_writeBuffer.put(data, offset, count);
+				m_writeBuffer.flip();
+				while (m_writeBuffer.hasRemaining()) {
+					m_output.write(m_writeBuffer);
+				}
+				offset += count;
+				length -= count;
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public int getBaudRate() {
+		return m_baudRate;
+	}
+
+	@Override
+	public void close() {
+		m_running = false;
+		try {
+			m_input.close();
+			m_output.close();
+		} catch (IOException e) {
+			DebugHelper.log(e);
+		}
+	}
+
+	private void readLoop() {
+		// blocking reads, every chunk is handed to the listener right away
+		try {
+			while (m_running) {
+				m_readBuffer.clear();
+				int count = m_input.read(m_readBuffer);
+				if (count < 0)
+					break;
+				if (count == 0)
+					continue;
+				m_readBuffer.flip();
+				m_readBuffer.get(m_receiveBuffer, 0, count);
+				ServoBusListener listener = m_listener;
+				if (listener != null)
+					listener.onDataReceived(m_receiveBuffer, 0, count);
+			}
+		} catch (ClosedChannelException e) {
+			// closed by close()
+		} catch (IOException e) {
+			DebugHelper.log(e);
+		}
+	}
+}
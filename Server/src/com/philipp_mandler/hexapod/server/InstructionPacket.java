@@ -0,0 +1,59 @@
+package com.philipp_mandler.hexapod.server;
+
+class InstructionPacket {
+
+	// 2 begin bytes, id, length and up to 255 bytes counted by the length field
+	public final static int MAX_SIZE = 4 + 255;
+
+	private final byte[] m_buffer = new byte[MAX_SIZE];
+	private int m_size = 0;
+	private int m_checksum = 0;
+
+	public InstructionPacket begin(int id, int instruction) {
+		// header, the length byte is filled in by finish()
+		m_buffer[0] = (byte) ServoController.DX_BEGIN;
+		m_buffer[1] = (byte) ServoController.DX_BEGIN;
+		m_buffer[2] = (byte) id;
+		m_buffer[4] = (byte) instruction;
+		m_size = 5;
+		m_checksum = (id & 0xFF) + (instruction & 0xFF);
+		return this;
+	}
+
+	public InstructionPacket add(int value) {
+		m_buffer[m_size++] = (byte) value;
+		m_checksum += value & 0xFF;
+		return this;
+	}
+
+	public InstructionPacket addWord(int value) {
+		// low byte first
+		add(value & 0x00FF);
+		add((value & 0xFF00) >> 8);
+		return this;
+	}
+
+	public InstructionPacket finish() {
+		// length = instruction + params + checksum
+		int length = m_size - 3;
+		m_buffer[3] = (byte) length;
+		m_checksum += length;
+		m_buffer[m_size++] = (byte) ServoController.calcChecksum(m_checksum);
+		return this;
+	}
+
+	public boolean writeTo(ServoBus bus) {
+		// send the whole packet with a single write
+		if(bus == null)
+			return false;
+		return bus.write(m_buffer, 0, m_size);
+	}
+
+	public byte[] getBuffer() {
+		return m_buffer;
+	}
+
+	public int getSize() {
+		return m_size;
+	}
+}
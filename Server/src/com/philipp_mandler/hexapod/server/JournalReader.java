@@ -0,0 +1,109 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class JournalReader {
+
+	private final File m_directory;
+	private final long[] m_segments;
+
+	private long m_session = -1;
+	private int m_index = -1;
+	private ByteBuffer m_buffer;
+	private int m_position;
+	private long m_startMillis;
+	private long m_startNanos;
+
+	public JournalReader(File directory) {
+		m_directory = directory;
+		m_segments = TelemetryJournal.listSegments(directory);
+	}
+
+	public long[] getSessions() throws IOException {
+		// sessions in the order they were recorded
+		long[] sessions = new long[m_segments.length];
+		int count = 0;
+		for(long segment : m_segments) {
+			long session = map(segment).getLong(TelemetryJournal.HEADER_SESSION);
+			if(count == 0 || sessions[count - 1] != session)
+				sessions[count++] = session;
+		}
+		return Arrays.copyOf(sessions, count);
+	}
+
+	public void setSession(long session) {
+		// -1 reads all segments
+		m_session = session;
+		rewind();
+	}
+
+	public void rewind() {
+		m_index = -1;
+		m_buffer = null;
+	}
+
+	public boolean next(JournalRecord record) throws IOException {
+		while(true) {
+			if(m_buffer != null && m_position + JournalRecord.SIZE <= m_buffer.limit()) {
+				if(record.readFrom(m_buffer, m_position)) {
+					m_position += JournalRecord.SIZE;
+					return true;
+				}
+			}
+
+			// a segment ends at its first incomplete record
+			if(!openNext())
+				return false;
+		}
+	}
+
+	public long getStartMillis() {
+		// wall clock time at the start of the current segment
+		return m_startMillis;
+	}
+
+	public long toMillis(long nanoTime) {
+		// wall clock time of a record in the current segment
+		return m_startMillis + (nanoTime - m_startNanos) / 1000000;
+	}
+
+	private boolean openNext() throws IOException {
+		m_buffer = null;
+		while(m_index + 1 < m_segments.length) {
+			m_index++;
+			ByteBuffer buffer = map(m_segments[m_index]);
+			if(m_session >= 0 && buffer.getLong(TelemetryJournal.HEADER_SESSION) != m_session)
+				continue;
+			m_buffer = buffer;
+			m_position = TelemetryJournal.HEADER_SIZE;
+			m_startMillis = buffer.getLong(TelemetryJournal.HEADER_START_MILLIS);
+			m_startNanos = buffer.getLong(TelemetryJournal.HEADER_START_NANOS);
+			return true;
+		}
+		return false;
+	}
+
+	private ByteBuffer map(long segment) throws IOException {
+		File file = TelemetryJournal.segmentFile(m_directory, segment);
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(buffer.limit() < TelemetryJournal.HEADER_SIZE || buffer.getInt(TelemetryJournal.HEADER_MAGIC) != TelemetryJournal.MAGIC)
+			throw new IOException(file + " is no journal segment.");
+		if(buffer.getInt(TelemetryJournal.HEADER_VERSION) != TelemetryJournal.VERSION || buffer.getInt(TelemetryJournal.HEADER_RECORD_SIZE) != JournalRecord.SIZE)
+			throw new IOException(file + " has an unsupported journal version.");
+		return buffer;
+	}
+}
@@ -0,0 +1,168 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.nio.ByteBuffer;
+
+public class JournalRecord {
+
+	// fixed record layout, all values little endian
+	public final static int SIZE = 400;
+
+	private final static int OFFSET_SEQUENCE = 0;
+	private final static int OFFSET_TIME = 8;
+	private final static int OFFSET_TICK = 16;
+	private final static int OFFSET_ELAPSED = 24;
+	private final static int OFFSET_MODE_START = 32;
+	private final static int OFFSET_MODE_END = 36;
+	private final static int OFFSET_FLAGS = 40;
+	private final static int OFFSET_SWITCH_GAIT = 44;
+	private final static int OFFSET_GAIT = 48;
+	private final static int OFFSET_SPEED = 56;
+	private final static int OFFSET_ROTATION_SPEED = 72;
+	private final static int OFFSET_ROTATION_GOAL = 80;
+	private final static int OFFSET_CENTER_OFFSET = 104;
+	private final static int OFFSET_HEIGHT_GOAL = 120;
+	private final static int OFFSET_LEVEL = 128;
+	private final static int OFFSET_LOADS = 152;
+	private final static int OFFSET_LEG_GOALS = 176;
+	private final static int OFFSET_SERVO_GOALS = 320;
+	private final static int OFFSET_DURATION = 392;
+
+	public final static int FLAG_TILT = 1;
+	public final static int FLAG_LEVELING = 2;
+	public final static int FLAG_GROUND_ADAPTION = 4;
+	public final static int FLAG_SLOWMODE = 8;
+	public final static int FLAG_ERROR_DEMO = 16;
+	// the level vector was read in this tick
+	public final static int FLAG_LEVEL = 32;
+	// the leg loads were read in this tick
+	public final static int FLAG_LOADS = 64;
+	// first tick after the module was started
+	public final static int FLAG_START = 128;
+
+	// header, the sequence is written last and marks the record as complete
+	public long sequence;
+	public long time;
+	public long tick;
+	public long elapsed;
+
+	// inputs at the start of the tick
+	public int modeStart;
+	public int flags;
+	public int switchGait = -1;
+	public double speedX;
+	public double speedY;
+	public double rotationSpeed;
+	public final double[] rotationGoal = new double[3];
+	public final double[] centerOffset = new double[2];
+	public double heightGoal;
+
+	// sensor values read during the tick
+	public final double[] level = new double[3];
+	public final int[] loads = new int[6];
+
+	// results at the end of the tick
+	public int modeEnd;
+	public int gait;
+	public final double[] legGoals = new double[18];
+	public final int[] servoGoals = new int[18];
+	public long duration;
+
+	public void clear() {
+		sequence = 0;
+		time = 0;
+		tick = 0;
+		elapsed = 0;
+		modeStart = 0;
+		modeEnd = 0;
+		flags = 0;
+		switchGait = -1;
+		gait = 0;
+		speedX = 0;
+		speedY = 0;
+		rotationSpeed = 0;
+		heightGoal = 0;
+		duration = 0;
+		for (int i = 0; i < 3; i++) {
+			rotationGoal[i] = 0;
+			level[i] = 0;
+		}
+		centerOffset[0] = 0;
+		centerOffset[1] = 0;
+		for (int i = 0; i < 6; i++) {
+			loads[i] = 0;
+		}
+		for (int i = 0; i < 18; i++) {
+			legGoals[i] = 0;
+			servoGoals[i] = 0;
+		}
+	}
+
+	public boolean hasFlag(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	void writeTo(ByteBuffer buffer, int offset) {
+		// absolute puts only, the buffer position is never touched
+		buffer.putLong(offset + OFFSET_TIME, time);
+		buffer.putLong(offset + OFFSET_TICK, tick);
+		buffer.putLong(offset + OFFSET_ELAPSED, elapsed);
+		buffer.putInt(offset + OFFSET_MODE_START, modeStart);
+		buffer.putInt(offset + OFFSET_MODE_END, modeEnd);
+		buffer.putInt(offset + OFFSET_FLAGS, flags);
+		buffer.putInt(offset + OFFSET_SWITCH_GAIT, switchGait);
+		buffer.putInt(offset + OFFSET_GAIT, gait);
+		buffer.putDouble(offset + OFFSET_SPEED, speedX);
+		buffer.putDouble(offset + OFFSET_SPEED + 8, speedY);
+		buffer.putDouble(offset + OFFSET_ROTATION_SPEED, rotationSpeed);
+		for (int i = 0; i < 3; i++) {
+			buffer.putDouble(offset + OFFSET_ROTATION_GOAL + i * 8, rotationGoal[i]);
+			buffer.putDouble(offset + OFFSET_LEVEL + i * 8, level[i]);
+		}
+		buffer.putDouble(offset + OFFSET_CENTER_OFFSET, centerOffset[0]);
+		buffer.putDouble(offset + OFFSET_CENTER_OFFSET + 8, centerOffset[1]);
+		buffer.putDouble(offset + OFFSET_HEIGHT_GOAL, heightGoal);
+		for (int i = 0; i < 6; i++) {
+			buffer.putInt(offset + OFFSET_LOADS + i * 4, loads[i]);
+		}
+		for (int i = 0; i < 18; i++) {
+			buffer.putDouble(offset + OFFSET_LEG_GOALS + i * 8, legGoals[i]);
+			buffer.putInt(offset + OFFSET_SERVO_GOALS + i * 4, servoGoals[i]);
+		}
+		buffer.putLong(offset + OFFSET_DURATION, duration);
+		buffer.putLong(offset + OFFSET_SEQUENCE, sequence);
+	}
+
+	boolean readFrom(ByteBuffer buffer, int offset) {
+		// returns false for a record that was never completed
+		sequence = buffer.getLong(offset + OFFSET_SEQUENCE);
+		if (sequence <= 0)
+			return false;
+		time = buffer.getLong(offset + OFFSET_TIME);
+		tick = buffer.getLong(offset + OFFSET_TICK);
+		elapsed = buffer.getLong(offset + OFFSET_ELAPSED);
+		modeStart = buffer.getInt(offset + OFFSET_MODE_START);
+		modeEnd = buffer.getInt(offset + OFFSET_MODE_END);
+		flags = buffer.getInt(offset + OFFSET_FLAGS);
+		switchGait = buffer.getInt(offset + OFFSET_SWITCH_GAIT);
+		gait = buffer.getInt(offset + OFFSET_GAIT);
+		speedX = buffer.getDouble(offset + OFFSET_SPEED);
+		speedY = buffer.getDouble(offset + OFFSET_SPEED + 8);
+		rotationSpeed = buffer.getDouble(offset + OFFSET_ROTATION_SPEED);
+		for (int i = 0; i < 3; i++) {
+			rotationGoal[i] = buffer.getDouble(offset + OFFSET_ROTATION_GOAL + i * 8);
+			level[i] = buffer.getDouble(offset + OFFSET_LEVEL + i * 8);
+		}
+		centerOffset[0] = buffer.getDouble(offset + OFFSET_CENTER_OFFSET);
+		centerOffset[1] = buffer.getDouble(offset + OFFSET_CENTER_OFFSET + 8);
+		heightGoal = buffer.getDouble(offset + OFFSET_HEIGHT_GOAL);
+		for (int i = 0; i < 6; i++) {
+			loads[i] = buffer.getInt(offset + OFFSET_LOADS + i * 4);
+		}
+		for (int i = 0; i < 18; i++) {
+			legGoals[i] = buffer.getDouble(offset + OFFSET_LEG_GOALS + i * 8);
+			servoGoals[i] = buffer.getInt(offset + OFFSET_SERVO_GOALS + i * 4);
+		}
+		duration = buffer.getLong(offset + OFFSET_DURATION);
+		return true;
+	}
+}
@@ -0,0 +1,179 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.philipp_mandler.hexapod.hexapod.Vec3;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+public class JournalReplay {
+
+	// leg goals are compared in mm
+	private final static double TOLERANCE = 0.000001;
+	private final static int MAX_REPORTED = 10;
+
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.out.println("Syntax: JournalReplay <journal directory> [session|list] [runs]");
+			return;
+		}
+
+		JournalReader reader = new JournalReader(new File(args[0]));
+
+		long[] sessions;
+		try {
+			sessions = reader.getSessions();
+		} catch (IOException e) {
+			System.out.println("Journal couldn't be read: " + e.getMessage());
+			return;
+		}
+		if(sessions.length == 0) {
+			System.out.println("No journal segments found in " + args[0] + ".");
+			return;
+		}
+
+		if(args.length > 1 && args[1].toLowerCase().equals("list")) {
+			listSessions(reader, sessions);
+			return;
+		}
+
+		// the newest session by default
+		long session = sessions[sessions.length - 1];
+		int runs = 1;
+		try {
+			if(args.length > 1)
+				session = Long.parseLong(args[1]);
+			if(args.length > 2)
+				runs = Math.max(1, Integer.parseInt(args[2]));
+		} catch (NumberFormatException e) {
+			System.out.println("The last parameter is no valid number.");
+			return;
+		}
+
+		// the module runs against simulated servos, nothing leaves this process
+		DebugHelper.setBroadcastEnabled(false);
+		ActuatorManager actuators = new ActuatorManager("sim:20", 1000000);
+		MobilityModule mobility = new MobilityModule(actuators, new TimeManager(1000, null));
+
+		try {
+			for(int run = 0; run < runs; run++) {
+				reader.setSession(session);
+				replay(reader, session, mobility, run == 0);
+			}
+		} catch (IOException e) {
+			System.out.println("Journal couldn't be read: " + e.getMessage());
+		}
+
+		actuators.shutdown();
+		DebugHelper.shutdown();
+	}
+
+	private static void listSessions(JournalReader reader, long[] sessions) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		JournalRecord record = new JournalRecord();
+		try {
+			for(long session : sessions) {
+				reader.setSession(session);
+				long count = 0;
+				long first = 0;
+				long last = 0;
+				while(reader.next(record)) {
+					if(count == 0)
+						first = reader.toMillis(record.time);
+					last = reader.toMillis(record.time);
+					count++;
+				}
+				System.out.println("Session " + session + ": " + count + " ticks, " + format.format(new Date(first)) + " - " + format.format(new Date(last)));
+			}
+		} catch (IOException e) {
+			System.out.println("Journal couldn't be read: " + e.getMessage());
+		}
+	}
+
+	private static void replay(JournalReader reader, long session, MobilityModule mobility, boolean report) throws IOException {
+		JournalRecord record = new JournalRecord();
+		Leg[] legs = mobility.getLegs();
+
+		LatencyHistogram recorded = new LatencyHistogram();
+		LatencyHistogram replayed = new LatencyHistogram();
+
+		long count = 0;
+		long legMismatches = 0;
+		long servoMismatches = 0;
+		double maxLegError = 0;
+		int maxServoError = 0;
+		int reported = 0;
+		long lastSequence = 0;
+		long gaps = 0;
+		int[] lastServoGoals = new int[18];
+
+		mobility.resetReplay();
+
+		long start = System.nanoTime();
+		while(reader.next(record)) {
+			if(count == 0 && !record.hasFlag(JournalRecord.FLAG_START) && report)
+				System.out.println("The journal starts while the module was running, the state before the first tick is unknown.");
+			if(lastSequence != 0 && record.sequence != lastSequence + 1)
+				gaps++;
+			lastSequence = record.sequence;
+
+			// the servo goals are calculated by the bus cycles between the ticks
+			if(count > 0 && !Arrays.equals(record.servoGoals, lastServoGoals)) {
+				for(Leg leg : legs) {
+					leg.updateServos();
+				}
+			}
+			System.arraycopy(record.servoGoals, 0, lastServoGoals, 0, lastServoGoals.length);
+
+			long tickStart = System.nanoTime();
+			mobility.replay(record);
+			replayed.record(System.nanoTime() - tickStart);
+			recorded.record(record.duration);
+
+			for(int i = 0; i < 6; i++) {
+				Vec3 goal = legs[i].getGoalPosition();
+				double error = Math.max(Math.abs(goal.getX() - record.legGoals[i * 3]),
+						Math.max(Math.abs(goal.getY() - record.legGoals[i * 3 + 1]), Math.abs(goal.getZ() - record.legGoals[i * 3 + 2])));
+				if(error > maxLegError)
+					maxLegError = error;
+				if(error > TOLERANCE) {
+					legMismatches++;
+					if(report && reported < MAX_REPORTED) {
+						reported++;
+						System.out.println(String.format("Tick %d, leg %d: recorded (%.3f, %.3f, %.3f), replayed (%.3f, %.3f, %.3f)",
+								record.tick, i, record.legGoals[i * 3], record.legGoals[i * 3 + 1], record.legGoals[i * 3 + 2],
+								goal.getX(), goal.getY(), goal.getZ()));
+					}
+				}
+
+				for(int j = 0; j < 3; j++) {
+					int servoError = Math.abs(legs[i].getServo(j).getPosValue() - record.servoGoals[i * 3 + j]);
+					if(servoError > maxServoError)
+						maxServoError = servoError;
+					if(servoError > 0)
+						servoMismatches++;
+				}
+			}
+			count++;
+		}
+		long total = System.nanoTime() - start;
+
+		if(report) {
+			System.out.println("Replayed " + count + " ticks of session " + session + (gaps > 0 ? " with " + gaps + " gaps" : "") + ".");
+			System.out.println(String.format("Leg goals: %d mismatches, max error %.6f mm", legMismatches, maxLegError));
+			System.out.println(String.format("Servo goals: %d mismatches, max error %d ticks", servoMismatches, maxServoError));
+			System.out.println("Recorded tick duration: " + summary(recorded));
+		}
+		System.out.println("Replayed tick duration: " + summary(replayed) + String.format(", %.1f ms total", total / 1000000.0));
+	}
+
+	private static String summary(LatencyHistogram histogram) {
+		return String.format("mean %.3f us, p50 %.3f us, p99 %.3f us, max %.3f us",
+				histogram.getMean() / 1000.0,
+				histogram.getValueAtPercentile(50) / 1000.0,
+				histogram.getValueAtPercentile(99) / 1000.0,
+				histogram.getMax() / 1000.0);
+	}
+}
@@ -0,0 +1,94 @@
+package com.philipp_mandler.hexapod.server;
+
+public class LatencyHistogram {
+
+	// every power of two is split into 32 linear sub buckets, about 3 % precision
+	private final static int SUB_BITS = 5;
+	private final static int SUB_COUNT = 1 << SUB_BITS;
+	private final static int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+	// written by a single thread, the volatile count publishes the buckets to readers
+	private final long[] m_buckets = new long[BUCKET_COUNT];
+	private volatile long m_count = 0;
+	private long m_sum = 0;
+	private volatile long m_max = 0;
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		m_buckets[indexOf(value)]++;
+		m_sum += value;
+		if (value > m_max)
+			m_max = value;
+		m_count++;
+	}
+
+	public long getCount() {
+		return m_count;
+	}
+
+	public long getMax() {
+		return m_max;
+	}
+
+	public long getSum() {
+		return m_sum;
+	}
+
+	public long getMean() {
+		long count = m_count;
+		return count == 0 ? 0 : m_sum / count;
+	}
+
+	public long getValueAtPercentile(double percentile) {
+		// highest value of the bucket that contains the percentile
+		long count = m_count;
+		if (count == 0)
+			return 0;
+		long limit = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += m_buckets[i];
+			if (seen >= limit)
+				return Math.min(highestValueOf(i), m_max);
+		}
+		return m_max;
+	}
+
+	public void copyTo(LatencyHistogram histogram) {
+		// read the count first, the buckets are at least as new as that
+		histogram.m_count = m_count;
+		System.arraycopy(m_buckets, 0, histogram.m_buckets, 0, BUCKET_COUNT);
+		histogram.m_sum = m_sum;
+		histogram.m_max = m_max;
+	}
+
+	void subtract(LatencyHistogram earlier) {
+		// turn a copy into the values recorded since the earlier copy, the max is rounded up to its bucket
+		long max = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			m_buckets[i] -= earlier.m_buckets[i];
+			if (m_buckets[i] > 0)
+				max = highestValueOf(i);
+		}
+		m_count -= earlier.m_count;
+		m_sum -= earlier.m_sum;
+		m_max = Math.min(max, m_max);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int) ((value >> shift) & (SUB_COUNT - 1));
+	}
+
+	static long highestValueOf(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int shift = (index >> SUB_BITS) - 1;
+		long lowest = (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
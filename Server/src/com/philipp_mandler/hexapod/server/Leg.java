@@ -26,9 +26,9 @@ public class Leg {
 		m_servos[1] = servo2;
 		m_servos[2] = servo3;
 
-		// ping each servo
+		// check each servo
 		for(SingleServo servo : m_servos) {
-			if(!servo.ping())
+			if(!servo.isConnected())
 				DebugHelper.log("Servo (ID: " + servo.getID() + ") from Leg (ID: " + legID + ") couldn't be found.", Log.WARNING);
 		}
 		
@@ -1,14 +1,39 @@
 package com.philipp_mandler.hexapod.server;
 
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicIntegerArray;
 
-public class LegLoadReader {
+public class LegLoadReader implements BusCycleListener {
 
 	private AtomicIntegerArray m_values;
 	private Leg[] m_legs;
 
-	private boolean m_run = false;
+	private int[] m_ids = new int[0];
+	private int[] m_legIndices = new int[0];
+	private ServoStatus[] m_statusList = new ServoStatus[0];
+
+	private AtomicBoolean m_pending = new AtomicBoolean(false);
+
+	private BusRequest m_request = new BusRequest(BusRequest.PRIORITY_HIGH) {
+		@Override
+		protected void execute(ServoController controller) {
+			// sample all legs in one bus transaction
+			controller.bulkReadStatus(m_ids, m_statusList);
+
+			for (int i = 0; i < m_ids.length; i++) {
+				if(m_statusList[i].isValid())
+					m_values.set(m_legIndices[i], SingleServo.convertLoad(m_statusList[i].getLoad()));
+				else
+					m_values.set(m_legIndices[i], -1);
+			}
+			m_pending.set(false);
+		}
+
+		@Override
+		protected void onExpired() {
+			m_pending.set(false);
+		}
+	};
 
 
 	public LegLoadReader(Leg[] legs) {
@@ -29,28 +54,45 @@ public class LegLoadReader {
 	}
 
 	public void start() {
-		new Thread(new Runnable() {
-			@Override
-			public void run() {
-				m_run = true;
-				while (m_run) {
-					for (int i = 0; i < m_legs.length; i++) {
-						SingleServo servo = m_legs[i].getServo(1);
-						m_values.set(i, servo.getCurrentLoad());
-
-						try {
-							Thread.sleep(2);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-					}
-				}
+		// collect the middle servo of every connected leg
+		int count = 0;
+		for(Leg leg : m_legs) {
+			if(leg.getServo(1).isConnected())
+				count++;
+		}
+
+		m_ids = new int[count];
+		m_legIndices = new int[count];
+		m_statusList = new ServoStatus[count];
+
+		count = 0;
+		for(int i = 0; i < m_legs.length; i++) {
+			SingleServo servo = m_legs[i].getServo(1);
+			if(servo.isConnected()) {
+				m_ids[count] = servo.getID();
+				m_legIndices[count] = i;
+				m_statusList[count] = new ServoStatus();
+				count++;
 			}
-		}).start();
+			else {
+				m_values.set(i, -1);
+			}
+		}
+
+		Main.getActuatorManager().getBusScheduler().addCycleListener(this);
 	}
 
 	public void stop() {
-		m_run = false;
+		Main.getActuatorManager().getBusScheduler().removeCycleListener(this);
+	}
+
+	@Override
+	public void onBusCycle(long cycle) {
+		// request new loads once the last request has been handled
+		if(m_ids.length > 0 && m_pending.compareAndSet(false, true)) {
+			BusScheduler scheduler = Main.getActuatorManager().getBusScheduler();
+			scheduler.submit(m_request, scheduler.getPeriod());
+		}
 	}
 
 }
@@ -2,7 +2,7 @@ package com.philipp_mandler.hexapod.server;
 
 import java.util.ArrayList;
 
-public class LegUpdater {
+public class LegUpdater implements BusCycleListener {
 	
 	private boolean m_running = false;
 
@@ -27,33 +27,24 @@ public class LegUpdater {
 	public void start() {
 		if(m_running) return;
 		m_running = true;
-		// start new Thread for sync updating the leg servos
-		new Thread(new Runnable() {
-			@Override
-			public void run() {
-				while(m_running) {
-
-					for(Leg leg : m_legs) {
-						leg.updateServos();
-					}
-
-					Main.getActuatorManager().syncUpdateLegServos();
-
-					try {
-						Thread.sleep(20);
-					} catch (InterruptedException e) {
-						DebugHelper.log(e.toString(), Log.ERROR);
-					}
-				}
-			}
-		}).start();
+		// calculate the servo positions right before every sync write of the bus scheduler
+		Main.getActuatorManager().invalidateGoals();
+		Main.getActuatorManager().getBusScheduler().addCycleListener(this);
 	}
 	
 	public void stop() {
 		m_running = false;
+		Main.getActuatorManager().getBusScheduler().removeCycleListener(this);
 	}
 	
 	public boolean isRunning() {
 		return m_running;
 	}
+
+	@Override
+	public void onBusCycle(long cycle) {
+		for(Leg leg : m_legs) {
+			leg.updateServos();
+		}
+	}
 }
@@ -7,10 +7,16 @@ public class Log {
 	
 	private String text;
 	private int level;
+	private long time;
 	
 	public Log(String text, int level) {
+		this(text, level, System.currentTimeMillis());
+	}
+
+	public Log(String text, int level, long time) {
 		this.text = text;
 		this.level = level;
+		this.time = time;
 	}
 	
 	public String getText() {
@@ -28,4 +34,12 @@ public class Log {
 	public void setLevel(int level) {
 		this.level = level;
 	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public void setTime(long time) {
+		this.time = time;
+	}
 }
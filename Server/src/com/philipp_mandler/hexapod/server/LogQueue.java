@@ -0,0 +1,77 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class LogQueue {
+
+	// bounded multi producer queue, every slot has a sequence number that tells
+	// producers and the consumer whose turn it is
+
+	private final int m_mask;
+	private final String[] m_texts;
+	private final int[] m_levels;
+	private final long[] m_times;
+	private final AtomicLongArray m_sequences;
+	private final AtomicLong m_tail = new AtomicLong();
+	private final AtomicLong m_dropped = new AtomicLong();
+	private long m_head = 0;
+
+	public LogQueue(int capacity) {
+		// capacity is rounded up to a power of two
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		m_mask = size - 1;
+		m_texts = new String[size];
+		m_levels = new int[size];
+		m_times = new long[size];
+		m_sequences = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++) {
+			m_sequences.set(i, i);
+		}
+	}
+
+	public boolean offer(String text, int level, long time) {
+		// never blocks, the message is dropped if the queue is full
+		while(true) {
+			long tail = m_tail.get();
+			int index = (int) (tail & m_mask);
+			long sequence = m_sequences.get(index);
+			if(sequence == tail) {
+				if(m_tail.compareAndSet(tail, tail + 1)) {
+					m_texts[index] = text;
+					m_levels[index] = level;
+					m_times[index] = time;
+					m_sequences.set(index, tail + 1);
+					return true;
+				}
+			}
+			else if(sequence < tail) {
+				m_dropped.incrementAndGet();
+				return false;
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return m_sequences.get((int) (m_head & m_mask)) != m_head + 1;
+	}
+
+	// the following methods are only used by the single consumer
+
+	public boolean poll(Log log) {
+		int index = (int) (m_head & m_mask);
+		if(m_sequences.get(index) != m_head + 1)
+			return false;
+		log.setText(m_texts[index]);
+		log.setLevel(m_levels[index]);
+		log.setTime(m_times[index]);
+		m_texts[index] = null;
+		m_sequences.set(index, m_head + m_mask + 1);
+		m_head++;
+		return true;
+	}
+
+	public long getDropped() {
+		return m_dropped.getAndSet(0);
+	}
+}
@@ -4,8 +4,10 @@ import com.philipp_mandler.hexapod.hexapod.net.ModuleStatusPackage;
 import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.concurrent.Callable;
 
 /* 
  *   
@@ -31,13 +33,17 @@ import java.io.InputStreamReader;
 
 public class Main implements NetworkingEventListener {
 
-	private static NetworkManager m_networking;
+	// written by the startup threads
+	private static volatile NetworkManager m_networking;
 	private static ModuleManager m_moduleManager = new ModuleManager();
-	private static ActuatorManager m_actuatorManager;
-	private static SensorManager m_sensorManager;
+	private static volatile ActuatorManager m_actuatorManager;
+	private static volatile SensorManager m_sensorManager;
 	private static TimeManager m_timeManager;
+	private static MetricsRegistry m_metrics = new MetricsRegistry();
+	private static volatile MetricsServer m_metricsServer;
 
 	private String m_serialPort;
+	private String m_journalDirectory;
 	private boolean m_running = true;
 
 	
@@ -45,8 +51,22 @@ public class Main implements NetworkingEventListener {
 		String serialPort = "/dev/ttyUSB0";
 		if(args.length > 0)
 			serialPort = args[0];
+
+		// optional rolling log file, 10 MB per file and 5 old files
+		if(args.length > 1) {
+			try {
+				DebugHelper.setLogFile(args[1], 10000000L, 5);
+			} catch (IOException e) {
+				System.out.println("Log file couldn't be opened: " + e.getMessage());
+			}
+		}
 		
 		Main main = new Main(serialPort);
+
+		// optional flight recorder of the mobility module
+		if(args.length > 2)
+			main.m_journalDirectory = args[2];
+
 		main.run();
 	}
 	
@@ -56,32 +76,74 @@ public class Main implements NetworkingEventListener {
 	
 	public void run() {
 
-		// initialize NetworkManager
-		try {
-			m_networking = new NetworkManager(8888);
-			m_networking.addEventListener(this);
-		} catch (IOException e) {
-			e.printStackTrace();
-			DebugHelper.log("Networking couldn't be initialized, aborting now.", Log.WARNING);
-			System.exit(0);
-		}
+		m_timeManager = new TimeManager(1000, m_metrics);
+
+		// network, servo bus and Kinect don't depend on each other and start in parallel
+		StartupSequence startup = new StartupSequence();
+
+		startup.add("network", new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				m_networking = new NetworkManager(8888);
+				m_networking.addEventListener(Main.this);
+				m_networking.addEventListener(m_moduleManager);
+				return null;
+			}
+		});
 
-		m_timeManager = new TimeManager(1000);
+		startup.add("servos", new Callable<Void>() {
+			@Override
+			public Void call() {
+				m_actuatorManager = new ActuatorManager(m_serialPort, 57600); //57600
+				return null;
+			}
+		});
 
-		// initialize ActuatorManager
-		m_actuatorManager = new ActuatorManager(m_serialPort, 57600); //57600
+		startup.add("sensors", new Callable<Void>() {
+			@Override
+			public Void call() {
+				m_sensorManager = new SensorManager();
+				return null;
+			}
+		});
 
-		m_sensorManager = new SensorManager();
+		startup.add("modules", new Callable<Void>() {
+			@Override
+			public Void call() {
+				registerModules();
+				return null;
+			}
+		}, "servos", "sensors");
 
-		// register Modules
-		m_moduleManager.registerModule(new MobilityModule());
-		m_moduleManager.registerModule(new TestingModule());
-		m_moduleManager.registerModule(new VisionModule());
-		m_moduleManager.registerModule(new BatteryModule());
-		m_moduleManager.registerModule(new AutoModule());
+		startup.add("metrics", new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				m_actuatorManager.registerMetrics(m_metrics);
+				m_moduleManager.registerMetrics(m_metrics);
+				m_networking.registerMetrics(m_metrics);
+				m_metricsServer = new MetricsServer(m_metrics, 9100);
+				return null;
+			}
+		}, "network", "modules");
 
-		// start modules
-		m_moduleManager.startModule("battery");
+		startup.add("start", new Callable<Void>() {
+			@Override
+			public Void call() {
+				m_moduleManager.startModule("battery");
+				return null;
+			}
+		}, "network", "modules");
+
+		boolean ready = startup.run();
+		DebugHelper.log("Startup: " + startup.getReport());
+
+		if(startup.hasFailed("network")) {
+			DebugHelper.log("Networking couldn't be initialized, aborting now.", Log.WARNING);
+			DebugHelper.shutdown();
+			System.exit(0);
+		}
+		if(!ready)
+			DebugHelper.log("Some startup phases failed, see above.", Log.WARNING);
 
 		// handle console input
 		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
@@ -99,12 +161,38 @@ public class Main implements NetworkingEventListener {
 		System.exit(0);
 	}
 
+	private void registerModules() {
+		MobilityModule mobility = new MobilityModule();
+		if(m_journalDirectory != null) {
+			try {
+				mobility.startJournal(new File(m_journalDirectory));
+			} catch (IOException e) {
+				DebugHelper.log("Journal couldn't be started: " + e.getMessage(), Log.WARNING);
+			}
+		}
+		m_moduleManager.registerModule(mobility);
+		m_moduleManager.registerModule(new TestingModule());
+		m_moduleManager.registerModule(new VisionModule());
+		m_moduleManager.registerModule(new BatteryModule());
+		m_moduleManager.registerModule(new AutoModule());
+	}
+
 	private void onExit() {
 		// clean up
 		DebugHelper.log("Shutting down...");
 		Main.getModuleManager().stop();
+
+		// subsystems of failed startup phases are missing
+		MobilityModule mobility = Main.getModuleManager().getModule(MobilityModule.class);
+		if(mobility != null)
+			mobility.stopJournal();
+		if(m_actuatorManager != null)
+			m_actuatorManager.shutdown();
 		Main.getNetworking().shutdown();
 		Main.getTimeManager().stop();
+		if(m_metricsServer != null)
+			m_metricsServer.stop();
+		DebugHelper.shutdown();
 	}
 
 	@Override
@@ -164,7 +252,7 @@ public class Main implements NetworkingEventListener {
 							statusText = "stopped";
 						}
 
-						out += "\n" + module.getName() + "\t\t " + statusText;
+						out += "\n" + module.getName() + "\t\t " + statusText + "\t" + module.getSchedule();
 					}
 					DebugHelper.log(out);
 					break;
@@ -175,6 +263,28 @@ public class Main implements NetworkingEventListener {
 					}
 					client.send(pack);
 					break;
+				case "metrics":
+					if(client != null) {
+						// the client sends the layout it knows to skip the names
+						int layout = -1;
+						if(cmd.length > 1) {
+							try {
+								layout = Integer.parseInt(cmd[1]);
+							} catch (NumberFormatException e) {
+								layout = -1;
+							}
+						}
+						client.send(m_metrics.createPackage(layout));
+					}
+					else {
+						StringBuilder text = new StringBuilder();
+						m_metrics.writePrometheus(text);
+						DebugHelper.log(text.toString());
+					}
+					break;
+				case "times":
+					DebugHelper.log(m_timeManager.getSummary());
+					break;
 				case "exit":
 					m_running = false;
 					break;
@@ -220,4 +330,8 @@ public class Main implements NetworkingEventListener {
 	public static TimeManager getTimeManager() {
 		return m_timeManager;
 	}
+
+	public static MetricsRegistry getMetrics() {
+		return m_metrics;
+	}
 }
@@ -0,0 +1,64 @@
+package com.philipp_mandler.hexapod.server;
+
+public abstract class Metric {
+
+	private final String m_name;
+	private final String m_labels;
+	private final String m_help;
+
+	protected Metric(String name, String labels, String help) {
+		// labels in prometheus syntax without braces, e.g. id="3", or null
+		m_name = name;
+		m_labels = labels;
+		m_help = help;
+	}
+
+	public String getName() {
+		return m_name;
+	}
+
+	public String getLabels() {
+		return m_labels;
+	}
+
+	public String getHelp() {
+		return m_help;
+	}
+
+	public String getFullName() {
+		if (m_labels == null)
+			return m_name;
+		return m_name + "{" + m_labels + "}";
+	}
+
+	public abstract String getType();
+
+	// number of values written by getValues()
+	public abstract int getValueCount();
+
+	public abstract void getValues(double[] values, int offset);
+
+	public abstract void getValueNames(String[] names, int offset);
+
+	public abstract void writePrometheus(StringBuilder out);
+
+	protected void writeSample(StringBuilder out, String suffix, String extraLabel, double value) {
+		out.append(m_name).append(suffix);
+		if (m_labels != null || extraLabel != null) {
+			out.append('{');
+			if (m_labels != null)
+				out.append(m_labels);
+			if (m_labels != null && extraLabel != null)
+				out.append(',');
+			if (extraLabel != null)
+				out.append(extraLabel);
+			out.append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			out.append((long) value);
+		else
+			out.append(value);
+		out.append('\n');
+	}
+}
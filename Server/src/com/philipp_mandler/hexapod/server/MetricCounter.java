@@ -0,0 +1,58 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MetricCounter extends Metric {
+
+	private final AtomicLong m_value = new AtomicLong();
+	private final MetricSource m_source;
+
+	public MetricCounter(String name, String labels, String help) {
+		this(name, labels, help, null);
+	}
+
+	public MetricCounter(String name, String labels, String help, MetricSource source) {
+		// a source is read when the metric is exported, e.g. a count kept by another class
+		super(name, labels, help);
+		m_source = source;
+	}
+
+	public void increment() {
+		m_value.incrementAndGet();
+	}
+
+	public void add(long value) {
+		m_value.addAndGet(value);
+	}
+
+	public double getValue() {
+		if (m_source != null)
+			return m_source.getValue();
+		return m_value.get();
+	}
+
+	@Override
+	public String getType() {
+		return "counter";
+	}
+
+	@Override
+	public int getValueCount() {
+		return 1;
+	}
+
+	@Override
+	public void getValues(double[] values, int offset) {
+		values[offset] = getValue();
+	}
+
+	@Override
+	public void getValueNames(String[] names, int offset) {
+		names[offset] = getFullName();
+	}
+
+	@Override
+	public void writePrometheus(StringBuilder out) {
+		writeSample(out, "", null, getValue());
+	}
+}
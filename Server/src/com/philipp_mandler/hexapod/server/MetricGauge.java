@@ -0,0 +1,51 @@
+package com.philipp_mandler.hexapod.server;
+
+public class MetricGauge extends Metric {
+
+	private volatile double m_value = 0;
+	private final MetricSource m_source;
+
+	public MetricGauge(String name, String labels, String help) {
+		this(name, labels, help, null);
+	}
+
+	public MetricGauge(String name, String labels, String help, MetricSource source) {
+		super(name, labels, help);
+		m_source = source;
+	}
+
+	public void set(double value) {
+		m_value = value;
+	}
+
+	public double getValue() {
+		if (m_source != null)
+			return m_source.getValue();
+		return m_value;
+	}
+
+	@Override
+	public String getType() {
+		return "gauge";
+	}
+
+	@Override
+	public int getValueCount() {
+		return 1;
+	}
+
+	@Override
+	public void getValues(double[] values, int offset) {
+		values[offset] = getValue();
+	}
+
+	@Override
+	public void getValueNames(String[] names, int offset) {
+		names[offset] = getFullName();
+	}
+
+	@Override
+	public void writePrometheus(StringBuilder out) {
+		writeSample(out, "", null, getValue());
+	}
+}
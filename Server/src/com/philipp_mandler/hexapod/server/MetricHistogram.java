@@ -0,0 +1,72 @@
+package com.philipp_mandler.hexapod.server;
+
+public class MetricHistogram extends Metric {
+
+	// exported as a prometheus summary in seconds
+	private final static double[] QUANTILES = {0.5, 0.99, 0.999};
+	private final static String[] QUANTILE_LABELS = {"quantile=\"0.5\"", "quantile=\"0.99\"", "quantile=\"0.999\""};
+	private final static double SCALE = 1e-9;
+
+	private final LatencyHistogram m_histogram;
+
+	public MetricHistogram(String name, String labels, String help, LatencyHistogram histogram) {
+		// the histogram records nanoseconds
+		super(name, labels, help);
+		m_histogram = histogram;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return m_histogram;
+	}
+
+	@Override
+	public String getType() {
+		return "summary";
+	}
+
+	@Override
+	public int getValueCount() {
+		// count, sum, quantiles and max
+		return 3 + QUANTILES.length;
+	}
+
+	@Override
+	public void getValues(double[] values, int offset) {
+		values[offset++] = m_histogram.getCount();
+		values[offset++] = m_histogram.getSum() * SCALE;
+		for (double quantile : QUANTILES) {
+			values[offset++] = m_histogram.getValueAtPercentile(quantile * 100) * SCALE;
+		}
+		values[offset] = m_histogram.getMax() * SCALE;
+	}
+
+	@Override
+	public void getValueNames(String[] names, int offset) {
+		names[offset++] = getName() + "_count" + labels(null);
+		names[offset++] = getName() + "_sum" + labels(null);
+		for (String label : QUANTILE_LABELS) {
+			names[offset++] = getName() + labels(label);
+		}
+		names[offset] = getName() + "_max" + labels(null);
+	}
+
+	@Override
+	public void writePrometheus(StringBuilder out) {
+		for (int i = 0; i < QUANTILES.length; i++) {
+			writeSample(out, "", QUANTILE_LABELS[i], m_histogram.getValueAtPercentile(QUANTILES[i] * 100) * SCALE);
+		}
+		writeSample(out, "_sum", null, m_histogram.getSum() * SCALE);
+		writeSample(out, "_count", null, m_histogram.getCount());
+	}
+
+	private String labels(String extraLabel) {
+		String labels = getLabels();
+		if (labels == null && extraLabel == null)
+			return "";
+		if (labels == null)
+			return "{" + extraLabel + "}";
+		if (extraLabel == null)
+			return "{" + labels + "}";
+		return "{" + labels + "," + extraLabel + "}";
+	}
+}
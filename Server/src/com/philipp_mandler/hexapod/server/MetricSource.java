@@ -0,0 +1,5 @@
+package com.philipp_mandler.hexapod.server;
+
+public interface MetricSource {
+	public double getValue();
+}
@@ -0,0 +1,112 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.philipp_mandler.hexapod.hexapod.net.MetricsPackage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class MetricsRegistry {
+
+	private final List<Metric> m_metrics = new CopyOnWriteArrayList<>();
+
+	// changes whenever metrics are added or removed
+	private volatile int m_layout = 0;
+
+	public <T extends Metric> T register(T metric) {
+		// a metric with the same name and labels is replaced
+		for(Metric tempMetric : m_metrics) {
+			if(tempMetric.getFullName().equals(metric.getFullName())) {
+				m_metrics.remove(tempMetric);
+				break;
+			}
+		}
+		m_metrics.add(metric);
+		m_layout++;
+		return metric;
+	}
+
+	public void remove(Metric metric) {
+		if(m_metrics.remove(metric))
+			m_layout++;
+	}
+
+	public MetricCounter counter(String name, String labels, String help) {
+		return register(new MetricCounter(name, labels, help));
+	}
+
+	public MetricCounter counter(String name, String labels, String help, MetricSource source) {
+		return register(new MetricCounter(name, labels, help, source));
+	}
+
+	public MetricGauge gauge(String name, String labels, String help) {
+		return register(new MetricGauge(name, labels, help));
+	}
+
+	public MetricGauge gauge(String name, String labels, String help, MetricSource source) {
+		return register(new MetricGauge(name, labels, help, source));
+	}
+
+	public MetricHistogram histogram(String name, String labels, String help, LatencyHistogram histogram) {
+		return register(new MetricHistogram(name, labels, help, histogram));
+	}
+
+	public List<Metric> getMetrics() {
+		return m_metrics;
+	}
+
+	public int getLayout() {
+		return m_layout;
+	}
+
+	public void writePrometheus(StringBuilder out) {
+		// text exposition format, all samples of one metric family are grouped
+		List<String> families = new ArrayList<>();
+		for(Metric metric : m_metrics) {
+			if(!families.contains(metric.getName()))
+				families.add(metric.getName());
+		}
+
+		for(String family : families) {
+			boolean first = true;
+			for(Metric metric : m_metrics) {
+				if(!metric.getName().equals(family))
+					continue;
+				if(first) {
+					out.append("# HELP ").append(family).append(' ').append(metric.getHelp()).append('\n');
+					out.append("# TYPE ").append(family).append(' ').append(metric.getType()).append('\n');
+					first = false;
+				}
+				metric.writePrometheus(out);
+			}
+		}
+	}
+
+	public MetricsPackage createPackage(int knownLayout) {
+		// skip the names if the client already knows the current layout
+		List<Metric> metrics = new ArrayList<>(m_metrics);
+		int layout = m_layout;
+
+		int count = 0;
+		for(Metric metric : metrics) {
+			count += metric.getValueCount();
+		}
+
+		double[] values = new double[count];
+		String[] names = knownLayout == layout ? null : new String[count];
+		int offset = 0;
+		for(Metric metric : metrics) {
+			metric.getValues(values, offset);
+			if(names != null)
+				metric.getValueNames(names, offset);
+			offset += metric.getValueCount();
+		}
+
+		float[] compactValues = new float[count];
+		for(int i = 0; i < count; i++) {
+			compactValues[i] = (float) values[i];
+		}
+
+		return new MetricsPackage(System.currentTimeMillis(), layout, names, compactValues);
+	}
+}
@@ -0,0 +1,40 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+public class MetricsServer {
+
+	private HttpServer m_server;
+
+	public MetricsServer(final MetricsRegistry registry, int port) throws IOException {
+		// prometheus text format on http://localhost:<port>/metrics
+		m_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		m_server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				StringBuilder out = new StringBuilder(4096);
+				registry.writePrometheus(out);
+				byte[] data = out.toString().getBytes(StandardCharsets.UTF_8);
+
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, data.length);
+				OutputStream stream = exchange.getResponseBody();
+				stream.write(data);
+				stream.close();
+			}
+		});
+		m_server.start();
+	}
+
+	public void stop() {
+		m_server.stop(0);
+	}
+}
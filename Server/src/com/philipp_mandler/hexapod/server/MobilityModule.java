@@ -10,8 +10,15 @@ import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 import com.philipp_mandler.hexapod.hexapod.net.NotificationPackage;
 import com.philipp_mandler.hexapod.hexapod.net.RotationPackage;
 
+import java.io.File;
+import java.io.IOException;
+
 public class MobilityModule extends Module implements NetworkingEventListener {
 
+	// 16 MB per journal segment are about 3.5 minutes at 200 Hz
+	private final static int JOURNAL_SEGMENT_SIZE = 16 * 1024 * 1024;
+	private final static int JOURNAL_SEGMENTS = 8;
+
 	private Vec2 m_speed = new Vec2();
 	private double m_rotSpeed = 0.0;
 	private Leg[] m_legs;
@@ -36,9 +43,13 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 
 	private LegUpdater m_legUpdater;
 
-	private int[] m_caseStepRipple = {5, 2, 3, 6, 1, 4};
-	private int[] m_caseStepTripod = {1, 3, 3, 1, 1, 3};
-	private int[] m_caseStepWave = {1, 3, 5, 7, 9, 11};
+	private final static int[] CASE_STEP_RIPPLE = {5, 2, 3, 6, 1, 4};
+	private final static int[] CASE_STEP_TRIPOD = {1, 3, 3, 1, 1, 3};
+	private final static int[] CASE_STEP_WAVE = {1, 3, 5, 7, 9, 11};
+
+	private int[] m_caseStepRipple = CASE_STEP_RIPPLE.clone();
+	private int[] m_caseStepTripod = CASE_STEP_TRIPOD.clone();
+	private int[] m_caseStepWave = CASE_STEP_WAVE.clone();
 
 	private WalkingGait m_walkingGait = WalkingGait.Ripple;
 
@@ -57,18 +68,35 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 
 	private Vec3[] m_currentWalkPositions = new Vec3[6];
 
-	private Time m_stepTime = new Time();
+	private final Time m_stepTime = new Time();
 
 	private TimeTracker m_timeTracker;
 	private boolean m_slowmode = false;
 
+	// flight recorder, one record per tick
+	private volatile TelemetryJournal m_journal;
+	private final JournalRecord m_record = new JournalRecord();
+	private boolean m_started = false;
+
+	// inputs of the tick that is replayed
+	private JournalRecord m_replay;
+	private final Vec3 m_replayLevel = new Vec3();
+
 
 	public MobilityModule() {
+		this(Main.getActuatorManager(), Main.getTimeManager());
+	}
+
+	MobilityModule(ActuatorManager acs, TimeManager timeManager) {
 
 		super.setName("mobility");
+		setTickRate(200);
+		setSchedulingClass(SCHEDULING_REALTIME);
+		subscribe(JoystickPackage.class);
+		subscribe(RotationPackage.class);
 
 		// create time trackers
-		m_timeTracker = Main.getTimeManager().createTracker("mobility");
+		m_timeTracker = timeManager.createTracker("mobility");
 
 		m_buttonGroup = new ButtonGroup(getName(), "Mobility Module");
 		m_buttonGroup.addButton(new Button("lift", "Lift", getName() + " lift"));
@@ -93,8 +121,6 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 		m_legUpdater = new LegUpdater();
 
 
-		ActuatorManager acs = Main.getActuatorManager();
-
 		m_legs = new Leg[6];
 
 		m_legs[1] = new Leg(1, Data.upperLeg, Data.lowerLeg, new Vec2(90, 210), -1.0122f + Math.PI, acs.getLegServo(1, 0), acs.getLegServo(1, 1), acs.getLegServo(1, 2), true);
@@ -118,20 +144,10 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 	@Override
 	public void onStart() {
 
-		for(int i = 0; i < 6; i++) {
-			m_legs[i].setGoalPosition(new Vec3(m_defaultPositions[i], 20));
-			m_currentWalkPositions[i] = new Vec3(m_defaultPositions[i], 20);
-			m_endPositions[i] = new Vec2(m_defaultPositions[i]);
-			m_loadOffsets[i] = 0.0;
-		}
-
-		m_speedFactor = 0.2;
+		reset();
 
 		m_legUpdater.start();
 
-		m_groundRotation = new Vec3();
-
-		Main.getNetworking().addEventListener(this);
 		Main.getNetworking().addButtonGroup(m_buttonGroup);
 
 		m_loadReader.start();
@@ -140,14 +156,37 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 	@Override
 	public void onStop() {
 		Main.getNetworking().removeButtonGroup(m_buttonGroup);
-		Main.getNetworking().removeEventListener(this);
 		m_legUpdater.stop();
 		m_loadReader.stop();
+
+		TelemetryJournal journal = m_journal;
+		if(journal != null)
+			journal.flush();
+	}
+
+	private void reset() {
+		for(int i = 0; i < 6; i++) {
+			m_legs[i].setGoalPosition(new Vec3(m_defaultPositions[i], 20));
+			m_currentWalkPositions[i] = new Vec3(m_defaultPositions[i], 20);
+			m_endPositions[i] = new Vec2(m_defaultPositions[i]);
+			m_loadOffsets[i] = 0.0;
+		}
+
+		m_speedFactor = 0.2;
+
+		m_groundRotation = new Vec3();
+
+		m_started = true;
 	}
 
 	@Override
 	public void tick(long tick, Time elapsedTime) {
 
+		TelemetryJournal journal = m_journal;
+		if(journal != null)
+			recordInputs(tick, elapsedTime);
+		m_started = false;
+
 		m_timeTracker.startTracking(tick);
 
 		if(m_mode == 0) { // lifting
@@ -188,7 +227,7 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 			if(m_leveling) {
 				action = m_timeTracker.trackAction("level");
 
-				Vec3 raw = Main.getSensorManager().getLevel();
+				Vec3 raw = readLevel();
 
 				Vec3 gravity = new Vec3(raw.getZ(), raw.getX(), 0);
 
@@ -246,7 +285,7 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 
 				double sumLoad = 0;
 
-				int loads[] = m_loadReader.getLoads();
+				int loads[] = readLoads();
 				double weightedLoads[] = new double[6];
 
 				for(int i = 0; i < 6; i++) {
@@ -404,7 +443,7 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 			action = m_timeTracker.trackAction("step calculation");
 
 			if(!idle) {
-				if (m_stepTime.getMilliseconds() < duration) m_stepTime = Time.fromNanoseconds(m_stepTime.getNanoseconds() + elapsedTime.getNanoseconds());
+				if (m_stepTime.getMilliseconds() < duration) m_stepTime.addNanos(elapsedTime.getNanoseconds());
 				else {
 					double factor = 0.8;
 
@@ -417,17 +456,160 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 					else {
 						m_speedFactor = m_speed.getLength() * factor + 0.2;
 					}
-					m_stepTime = Time.fromNanoseconds(0);
+					m_stepTime.reset();
 				}
 			}
 
 			action.stopTracking();
 		}
 
-		m_timeTracker.stopTracking();
+		long duration = m_timeTracker.stopTracking();
+
+		if(journal != null) {
+			recordResults(duration);
+			journal.append(m_record);
+		}
 
 	}
 
+	private Vec3 readLevel() {
+		if(m_replay != null) {
+			if(!m_replay.hasFlag(JournalRecord.FLAG_LEVEL))
+				return null;
+			m_replayLevel.set(m_replay.level[0], m_replay.level[1], m_replay.level[2]);
+			return m_replayLevel;
+		}
+
+		Vec3 level = Main.getSensorManager().getLevel();
+		if(level != null) {
+			m_record.level[0] = level.getX();
+			m_record.level[1] = level.getY();
+			m_record.level[2] = level.getZ();
+			m_record.flags |= JournalRecord.FLAG_LEVEL;
+		}
+		return level;
+	}
+
+	private int[] readLoads() {
+		if(m_replay != null)
+			return m_replay.loads;
+
+		int[] loads = m_loadReader.getLoads();
+		System.arraycopy(loads, 0, m_record.loads, 0, 6);
+		m_record.flags |= JournalRecord.FLAG_LOADS;
+		return loads;
+	}
+
+	private void recordInputs(long tick, Time elapsedTime) {
+		// copy the state commands and the network changed since the last tick
+		JournalRecord record = m_record;
+		record.time = System.nanoTime();
+		record.tick = tick;
+		record.elapsed = elapsedTime.getNanoseconds();
+		record.modeStart = m_mode;
+
+		int flags = 0;
+		if(m_tilt) flags |= JournalRecord.FLAG_TILT;
+		if(m_leveling) flags |= JournalRecord.FLAG_LEVELING;
+		if(m_groundAdaption) flags |= JournalRecord.FLAG_GROUND_ADAPTION;
+		if(m_slowmode) flags |= JournalRecord.FLAG_SLOWMODE;
+		if(m_errorDemo) flags |= JournalRecord.FLAG_ERROR_DEMO;
+		if(m_started) flags |= JournalRecord.FLAG_START;
+		record.flags = flags;
+
+		WalkingGait switchGait = m_switchGait;
+		record.switchGait = switchGait != null ? switchGait.ordinal() : -1;
+		record.speedX = m_speed.getX();
+		record.speedY = m_speed.getY();
+		record.rotationSpeed = m_rotSpeed;
+		record.rotationGoal[0] = m_rotationGoal.getX();
+		record.rotationGoal[1] = m_rotationGoal.getY();
+		record.rotationGoal[2] = m_rotationGoal.getZ();
+		record.centerOffset[0] = m_centerOffset.getX();
+		record.centerOffset[1] = m_centerOffset.getY();
+		record.heightGoal = m_preferredHeightGoal;
+	}
+
+	private void recordResults(long duration) {
+		JournalRecord record = m_record;
+		record.modeEnd = m_mode;
+		record.gait = m_walkingGait.ordinal();
+		for(int i = 0; i < 6; i++) {
+			Vec3 goal = m_legs[i].getGoalPosition();
+			record.legGoals[i * 3] = goal.getX();
+			record.legGoals[i * 3 + 1] = goal.getY();
+			record.legGoals[i * 3 + 2] = goal.getZ();
+			for(int j = 0; j < 3; j++) {
+				record.servoGoals[i * 3 + j] = m_legs[i].getServo(j).getPosValue();
+			}
+		}
+		record.duration = duration;
+	}
+
+	void replay(JournalRecord record) {
+		// run one recorded tick offline, the inputs replace network, commands and sensors
+		if(record.hasFlag(JournalRecord.FLAG_START))
+			reset();
+
+		m_mode = record.modeStart;
+		m_tilt = record.hasFlag(JournalRecord.FLAG_TILT);
+		m_leveling = record.hasFlag(JournalRecord.FLAG_LEVELING);
+		m_groundAdaption = record.hasFlag(JournalRecord.FLAG_GROUND_ADAPTION);
+		m_slowmode = record.hasFlag(JournalRecord.FLAG_SLOWMODE);
+		m_errorDemo = record.hasFlag(JournalRecord.FLAG_ERROR_DEMO);
+		m_switchGait = record.switchGait >= 0 ? WalkingGait.values()[record.switchGait] : null;
+		m_speed.set(record.speedX, record.speedY);
+		m_rotSpeed = record.rotationSpeed;
+		m_rotationGoal.set(record.rotationGoal[0], record.rotationGoal[1], record.rotationGoal[2]);
+		m_centerOffset.set(record.centerOffset[0], record.centerOffset[1]);
+		m_preferredHeightGoal = record.heightGoal;
+
+		m_replay = record;
+		try {
+			tick(record.tick, record.elapsed);
+		} finally {
+			m_replay = null;
+		}
+	}
+
+	void resetReplay() {
+		// state of a freshly created module
+		m_mode = 3;
+		m_walkingGait = WalkingGait.Ripple;
+		m_switchGait = null;
+		m_preferredHeight = 100;
+		m_preferredHeightGoal = 100;
+		m_rotation.set(0, 0, 0);
+		m_stepTime.reset();
+		System.arraycopy(CASE_STEP_RIPPLE, 0, m_caseStepRipple, 0, 6);
+		System.arraycopy(CASE_STEP_TRIPOD, 0, m_caseStepTripod, 0, 6);
+		System.arraycopy(CASE_STEP_WAVE, 0, m_caseStepWave, 0, 6);
+		reset();
+	}
+
+	public void startJournal(File directory) throws IOException {
+		stopJournal();
+		m_journal = new TelemetryJournal(directory, JOURNAL_SEGMENT_SIZE, JOURNAL_SEGMENTS);
+		DebugHelper.log("Journal session " + m_journal.getSession() + " started in " + directory + ".");
+	}
+
+	public void stopJournal() {
+		TelemetryJournal journal = m_journal;
+		m_journal = null;
+		if(journal != null) {
+			journal.close();
+			DebugHelper.log("Journal stopped after " + journal.getRecordCount() + " records.");
+		}
+	}
+
+	public boolean isJournaling() {
+		return m_journal != null;
+	}
+
+	public Leg[] getLegs() {
+		return m_legs;
+	}
+
 	@Override
 	public void onDataReceived(ClientWorker client, NetPackage pack) {
 		if(pack instanceof JoystickPackage) {
@@ -597,6 +779,22 @@ public class MobilityModule extends Module implements NetworkingEventListener {
 				else if(cmd[1].toLowerCase().equals("move-center-res")) {
 					m_centerOffset.set(0,0);
 				}
+				else if(cmd[1].toLowerCase().equals("journal")) {
+					if(cmd.length > 2 && cmd[2].toLowerCase().equals("start")) {
+						File directory = new File(cmd.length > 3 ? cmd[3] : "journal");
+						try {
+							startJournal(directory);
+						} catch (IOException e) {
+							DebugHelper.log("Journal couldn't be started: " + e.getMessage(), Log.WARNING);
+						}
+					}
+					else if(cmd.length > 2 && cmd[2].toLowerCase().equals("stop")) {
+						stopJournal();
+					}
+					else {
+						DebugHelper.log(isJournaling() ? "Journal is recording." : "Journal is stopped.");
+					}
+				}
 			}
 		}
 	}
@@ -1,9 +1,30 @@
 package com.philipp_mandler.hexapod.server;
 
+import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public abstract class Module implements NetworkingEventListener {
 
+	// ticks per second if the module doesn't set its own rate
+	public final static double DEFAULT_TICK_RATE = 100;
+
+	// scheduling classes
+	// real-time modules tick on their own high priority thread
+	public final static int SCHEDULING_REALTIME = 0;
+	// background modules share a small pool of worker threads
+	public final static int SCHEDULING_BACKGROUND = 1;
+	// event-driven modules are never ticked, they only react to network events
+	public final static int SCHEDULING_EVENT = 2;
+
 	private String m_name;
-	private boolean m_running = false;
+	private volatile boolean m_running = false;
+	private final ModuleSchedule m_schedule = new ModuleSchedule(DEFAULT_TICK_RATE);
+	private int m_schedulingClass = SCHEDULING_BACKGROUND;
+	private final Time m_elapsedTime = new Time();
+	private final List<Class<? extends NetPackage>> m_subscriptions = new CopyOnWriteArrayList<>();
+	private final List<String> m_dependencies = new CopyOnWriteArrayList<>();
 
 	public String getName() {
 		return m_name;
@@ -13,6 +34,49 @@ public abstract class Module implements NetworkingEventListener {
 		m_name = name;
 	}
 
+	protected void setTickRate(double rate) {
+		m_schedule.setRate(rate);
+	}
+
+	protected void setOverrunPolicy(int policy) {
+		m_schedule.setOverrunPolicy(policy);
+	}
+
+	protected void setSchedulingClass(int schedulingClass) {
+		// has to be set before the module is registered
+		m_schedulingClass = schedulingClass;
+	}
+
+	protected void subscribe(Class<? extends NetPackage> type) {
+		// only subscribed packages and their subclasses reach onDataReceived, has to be set before the module is registered
+		m_subscriptions.add(type);
+	}
+
+	protected void dependsOn(String moduleName) {
+		// the module manager starts these modules first and stops this module before them
+		m_dependencies.add(moduleName);
+	}
+
+	public List<String> getDependencies() {
+		return m_dependencies;
+	}
+
+	boolean isSubscribed(Class<?> type) {
+		for(Class<? extends NetPackage> subscription : m_subscriptions) {
+			if(subscription.isAssignableFrom(type))
+				return true;
+		}
+		return false;
+	}
+
+	public int getSchedulingClass() {
+		return m_schedulingClass;
+	}
+
+	public ModuleSchedule getSchedule() {
+		return m_schedule;
+	}
+
 	protected abstract void onStart();
 	protected abstract void onStop();
 
@@ -22,6 +86,7 @@ public abstract class Module implements NetworkingEventListener {
 
 	public void start() {
 		onStart();
+		m_schedule.reset();
 		m_running = true;
 	}
 
@@ -30,5 +95,11 @@ public abstract class Module implements NetworkingEventListener {
 		onStop();
 	}
 
+	public void tick(long tick, long elapsedNanos) {
+		// the same Time is passed on every tick, it is only valid until the tick returns
+		m_elapsedTime.setNanoseconds(elapsedNanos);
+		tick(tick, m_elapsedTime);
+	}
+
 	public abstract void tick(long tick, Time elapsedTime);
 }
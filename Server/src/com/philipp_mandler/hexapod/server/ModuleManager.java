@@ -3,126 +3,248 @@ package com.philipp_mandler.hexapod.server;
 import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class ModuleManager implements NetworkingEventListener {
 
+	// worker threads shared by all background modules
+	private final static int BACKGROUND_THREADS = 2;
+
+	private final static Module[] NO_MODULES = new Module[0];
+
 	private List<Module> m_modules = new CopyOnWriteArrayList<>();
-	private Time m_lastTime = new Time();
-	private boolean m_running = true;
-	private long m_tick = 0;
+	private Map<String, Module> m_modulesByName = new ConcurrentHashMap<>();
+	private Map<Class<?>, Module> m_modulesByClass = new ConcurrentHashMap<>();
+
+	// subscribers per package class, filled on the first package of a class and replaced when the modules change
+	private volatile Map<Class<?>, Module[]> m_routes = new ConcurrentHashMap<>();
+	private Map<Module, ModuleTicker> m_realtimeTickers = new ConcurrentHashMap<>();
+	private ExecutorService m_backgroundPool;
+	private ModuleTicker m_backgroundTicker;
 
 	public ModuleManager() {
-		// handle main ticks of modules
-		Thread thread = new Thread(new Runnable() {
+		// background ticks run on the pool, so a blocking module can't stall the loop
+		m_backgroundPool = Executors.newFixedThreadPool(BACKGROUND_THREADS, new ThreadFactory() {
+			private int m_count = 0;
+
 			@Override
-			public void run() {
-				while(m_running) {
-					// calculate elapsed time
-					Time tempTime = Time.fromNanoseconds(System.nanoTime());
-					Time m_elapsedTime = Time.fromNanoseconds(tempTime.getNanoseconds() - m_lastTime.getNanoseconds());
-					m_lastTime = tempTime;
-
-					for(Module module : m_modules) {
-						if(module.isRunning())
-							module.tick(m_tick, m_elapsedTime);
-					}
-					m_tick++;
-
-					try {
-						Thread.sleep(0, 1000);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Background module worker " + m_count++);
+				thread.setDaemon(true);
+				return thread;
 			}
 		});
 
-		m_lastTime = Time.fromNanoseconds(System.nanoTime());
-
-		thread.start();
+		m_backgroundTicker = new ModuleTicker("Background module ticks", Thread.NORM_PRIORITY, m_backgroundPool);
+		m_backgroundTicker.start();
 	}
 
 	public void stop() {
-		// break loop und stop modules
-		m_running = false;
+		// stop scheduling und stop modules
+		m_backgroundTicker.stop();
+		for(ModuleTicker ticker : m_realtimeTickers.values()) {
+			ticker.stop();
+		}
+		m_backgroundPool.shutdown();
+
 		for(Module module : m_modules) {
-			if(module.isRunning())
-				module.stop();
+			stopModule(module);
 		}
 	}
 
-	public void registerModule(Module module) {
-		// register module to loop
-		for(Module tempModule : m_modules) {
-			if(module.getName().equals(tempModule.getName())) {
-				return;
-			}
+	private void schedule(Module module) {
+		// hand the module to the ticker of its scheduling class
+		switch(module.getSchedulingClass()) {
+			case Module.SCHEDULING_REALTIME:
+				ModuleTicker ticker = new ModuleTicker("Module " + module.getName(), Thread.MAX_PRIORITY, null);
+				ticker.add(module);
+				m_realtimeTickers.put(module, ticker);
+				ticker.start();
+				break;
+			case Module.SCHEDULING_BACKGROUND:
+				m_backgroundTicker.add(module);
+				break;
+			default:
+				// event-driven modules are not ticked
+				break;
 		}
-		m_modules.add(module);
+	}
 
+	private void unschedule(Module module) {
+		ModuleTicker ticker = m_realtimeTickers.remove(module);
+		if(ticker != null)
+			ticker.stop();
+		m_backgroundTicker.remove(module);
 	}
 
-	public void removeModule(String moduleName) {
-		// remove module from loop
+	private void wakeUp(Module module) {
+		ModuleTicker ticker = m_realtimeTickers.get(module);
+		if(ticker != null)
+			ticker.wakeUp();
+		else
+			m_backgroundTicker.wakeUp();
+	}
+
+	public void registerMetrics(MetricsRegistry registry) {
 		for(Module module : m_modules) {
-			if(module.getName().equals(moduleName)) {
-				m_modules.remove(module);
-				return;
-			}
+			final ModuleSchedule schedule = module.getSchedule();
+			String labels = "module=\"" + module.getName() + "\"";
+			registry.counter("hexapod_module_ticks_total", labels, "Module ticks.", new MetricSource() {
+				@Override
+				public double getValue() {
+					return schedule.getTickCount();
+				}
+			});
+			registry.counter("hexapod_module_overruns_total", labels, "Ticks that finished after the next deadline.", new MetricSource() {
+				@Override
+				public double getValue() {
+					return schedule.getOverrunCount();
+				}
+			});
+			registry.counter("hexapod_module_skipped_ticks_total", labels, "Ticks dropped because of overruns.", new MetricSource() {
+				@Override
+				public double getValue() {
+					return schedule.getSkippedCount();
+				}
+			});
+			registry.gauge("hexapod_module_tick_rate_hz", labels, "Target tick rate.", new MetricSource() {
+				@Override
+				public double getValue() {
+					return schedule.getRate();
+				}
+			});
+			registry.histogram("hexapod_module_tick_jitter_seconds", labels, "Delay of a tick against its deadline.", schedule.getJitterHistogram());
+			registry.histogram("hexapod_module_tick_duration_seconds", labels, "Duration of a tick.", schedule.getDurationHistogram());
 		}
 	}
 
-	public void removeModule(Module module) {
+	public synchronized void registerModule(Module module) {
+		// register module to loop, names are unique
+		if(m_modulesByName.containsKey(module.getName()))
+			return;
+
+		m_modulesByName.put(module.getName(), module);
+		if(!m_modulesByClass.containsKey(module.getClass()))
+			m_modulesByClass.put(module.getClass(), module);
+		m_modules.add(module);
+		m_routes = new ConcurrentHashMap<>();
+		schedule(module);
+	}
+
+	public void removeModule(String moduleName) {
+		// remove module from loop
+		Module module = m_modulesByName.get(moduleName);
+		if(module != null)
+			removeModule(module);
+	}
+
+	public synchronized void removeModule(Module module) {
 		// remove module from loop
-		m_modules.remove(module);
+		if(!m_modules.remove(module))
+			return;
+
+		m_modulesByName.remove(module.getName());
+		if(m_modulesByClass.get(module.getClass()) == module) {
+			m_modulesByClass.remove(module.getClass());
+			for(Module other : m_modules) {
+				if(other.getClass() == module.getClass()) {
+					m_modulesByClass.put(other.getClass(), other);
+					break;
+				}
+			}
+		}
+		m_routes = new ConcurrentHashMap<>();
+		unschedule(module);
 	}
 
 	public void startModule(Module module) {
-		// start module
-		if(m_modules.contains(module) && !module.isRunning())
-			module.start();
+		// start module after its dependencies
+		startModule(module, new HashSet<Module>());
+	}
+
+	private synchronized void startModule(Module module, Set<Module> starting) {
+		if(m_modulesByName.get(module.getName()) != module || module.isRunning() || !starting.add(module))
+			return;
+
+		for(String dependency : module.getDependencies()) {
+			Module required = m_modulesByName.get(dependency);
+			if(required != null)
+				startModule(required, starting);
+			else
+				DebugHelper.log("Module " + module.getName() + " depends on the missing module " + dependency + ".", Log.WARNING);
+		}
+
+		module.start();
+		wakeUp(module);
 	}
 
 	public boolean startModule(String moduleName) {
 		// start module by name
-		for(Module module : m_modules) {
-			if(module.getName().equals(moduleName) && !module.isRunning()) {
-				if(!module.isRunning())
-					module.start();
-				return true;
-			}
-		}
-		return false;
+		Module module = m_modulesByName.get(moduleName);
+		if(module == null)
+			return false;
+		startModule(module);
+		return true;
 	}
 
 	public void stopModule(Module module) {
-		// stop module
-		if(m_modules.contains(module) && module.isRunning())
-			module.stop();
+		// stop the running modules that depend on this one first
+		stopModule(module, new HashSet<Module>());
+	}
+
+	private synchronized void stopModule(Module module, Set<Module> stopping) {
+		if(m_modulesByName.get(module.getName()) != module || !module.isRunning() || !stopping.add(module))
+			return;
+
+		for(Module other : m_modules) {
+			if(other.getDependencies().contains(module.getName()))
+				stopModule(other, stopping);
+		}
+
+		module.stop();
 	}
 
 	public boolean stopModule(String moduleName) {
 		// stop module by name
-		for(Module module : m_modules) {
-			if(module.getName().equals(moduleName)) {
-				if(module.isRunning())
-					module.stop();
-				return true;
-			}
-		}
-		return false;
+		Module module = m_modulesByName.get(moduleName);
+		if(module == null)
+			return false;
+		stopModule(module);
+		return true;
 	}
 
 	public Module getModule(String moduleName) {
 		// get a module by name
-		for(Module module : m_modules) {
-			if(module.getName().equals(moduleName)) {
-				return module;
+		return m_modulesByName.get(moduleName);
+	}
+
+	public <T extends Module> T getModule(Class<T> type) {
+		// get the first registered module of a class
+		return type.cast(m_modulesByClass.get(type));
+	}
+
+	private Module[] getRoute(Class<?> type) {
+		// modules subscribed to a package class, resolved once per class
+		Map<Class<?>, Module[]> routes = m_routes;
+		Module[] route = routes.get(type);
+		if(route == null) {
+			List<Module> subscribers = new ArrayList<>();
+			for(Module module : m_modules) {
+				if(module.isSubscribed(type))
+					subscribers.add(module);
 			}
+			route = subscribers.isEmpty() ? NO_MODULES : subscribers.toArray(new Module[subscribers.size()]);
+			routes.put(type, route);
 		}
-		return null;
+		return route;
 	}
 
 	public final List<Module> getModules() {
@@ -131,8 +253,8 @@ public class ModuleManager implements NetworkingEventListener {
 
 	@Override
 	public void onDataReceived(ClientWorker client, NetPackage pack) {
-		// forward network data to running modules
-		for(Module module : m_modules) {
+		// forward network data to running modules that subscribed to it
+		for(Module module : getRoute(pack.getClass())) {
 			if(module.isRunning()) {
 				module.onDataReceived(client, pack);
 			}
@@ -0,0 +1,176 @@
+package com.philipp_mandler.hexapod.server;
+
+public class ModuleSchedule {
+
+	// on overrun, run the missed ticks back to back
+	public final static int OVERRUN_CATCH_UP = 0;
+	// on overrun, drop the missed ticks and continue with the next deadline
+	public final static int OVERRUN_SKIP = 1;
+
+	// the catch up policy gives up after this many missed periods
+	public final static int MAX_CATCH_UP = 10;
+
+	private volatile long m_period;
+	private volatile int m_overrunPolicy = OVERRUN_SKIP;
+
+	// state, owned by the ticking thread
+	private long m_deadline = 0;
+	private long m_lastTick = 0;
+	private volatile boolean m_reset = true;
+	private long m_tick = 0;
+
+	// metrics in nanoseconds
+	private volatile long m_tickCount = 0;
+	private volatile long m_overrunCount = 0;
+	private volatile long m_skippedCount = 0;
+	private volatile long m_lastJitter = 0;
+	private volatile long m_maxJitter = 0;
+	private volatile long m_jitterSum = 0;
+	private volatile long m_lastDuration = 0;
+	private volatile long m_maxDuration = 0;
+	private final LatencyHistogram m_jitterHistogram = new LatencyHistogram();
+	private final LatencyHistogram m_durationHistogram = new LatencyHistogram();
+
+	public ModuleSchedule(double rate) {
+		setRate(rate);
+	}
+
+	public void setRate(double rate) {
+		// ticks per second
+		m_period = (long) (1000000000.0 / rate);
+	}
+
+	public double getRate() {
+		return 1000000000.0 / m_period;
+	}
+
+	public long getPeriod() {
+		return m_period;
+	}
+
+	public void setOverrunPolicy(int policy) {
+		m_overrunPolicy = policy;
+	}
+
+	public int getOverrunPolicy() {
+		return m_overrunPolicy;
+	}
+
+	void reset() {
+		// the next tick is due right away
+		m_reset = true;
+	}
+
+	long getDeadline(long now) {
+		if (m_reset)
+			return now;
+		return m_deadline;
+	}
+
+	boolean isDue(long now) {
+		return m_reset || now - m_deadline >= 0;
+	}
+
+	void tick(Module module, long now) {
+		long period = m_period;
+
+		if (m_reset) {
+			m_reset = false;
+			m_deadline = now;
+			m_lastTick = now;
+		}
+
+		// lateness of this tick against its deadline
+		long jitter = now - m_deadline;
+		m_lastJitter = jitter;
+		if (jitter > m_maxJitter)
+			m_maxJitter = jitter;
+		m_jitterSum += jitter;
+		m_jitterHistogram.record(jitter);
+
+		try {
+			module.tick(m_tick++, now - m_lastTick);
+		} finally {
+			// a failed tick still uses up its period, otherwise it would be retried right away
+			m_lastTick = now;
+
+			long end = System.nanoTime();
+			long duration = end - now;
+			m_lastDuration = duration;
+			if (duration > m_maxDuration)
+				m_maxDuration = duration;
+			m_durationHistogram.record(duration);
+			m_tickCount++;
+
+			// advance to the next deadline
+			m_deadline += period;
+			if (end - m_deadline > 0) {
+				m_overrunCount++;
+				long missed = (end - m_deadline) / period + 1;
+				if (m_overrunPolicy == OVERRUN_SKIP || missed > MAX_CATCH_UP) {
+					m_skippedCount += missed;
+					m_deadline += missed * period;
+				}
+			}
+		}
+	}
+
+	public void resetMetrics() {
+		m_tickCount = 0;
+		m_overrunCount = 0;
+		m_skippedCount = 0;
+		m_lastJitter = 0;
+		m_maxJitter = 0;
+		m_jitterSum = 0;
+		m_lastDuration = 0;
+		m_maxDuration = 0;
+	}
+
+	public LatencyHistogram getJitterHistogram() {
+		return m_jitterHistogram;
+	}
+
+	public LatencyHistogram getDurationHistogram() {
+		return m_durationHistogram;
+	}
+
+	public long getTickCount() {
+		return m_tickCount;
+	}
+
+	public long getOverrunCount() {
+		return m_overrunCount;
+	}
+
+	public long getSkippedCount() {
+		return m_skippedCount;
+	}
+
+	public long getLastJitter() {
+		return m_lastJitter;
+	}
+
+	public long getMaxJitter() {
+		return m_maxJitter;
+	}
+
+	public long getMeanJitter() {
+		long count = m_tickCount;
+		return count == 0 ? 0 : m_jitterSum / count;
+	}
+
+	public long getLastDuration() {
+		return m_lastDuration;
+	}
+
+	public long getMaxDuration() {
+		return m_maxDuration;
+	}
+
+	public String toString() {
+		return String.format("%.1f Hz, %d ticks, %d overruns, %d skipped, jitter %.3f / %.3f ms, duration %.3f / %.3f ms",
+				getRate(), m_tickCount, m_overrunCount, m_skippedCount,
+				getMeanJitter() / 1000000.0, m_maxJitter / 1000000.0,
+				m_lastDuration / 1000000.0, m_maxDuration / 1000000.0);
+	}
+}
@@ -0,0 +1,137 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+class ModuleTicker {
+
+	// longest sleep while no module is running
+	private final static long IDLE_PERIOD = 100000000L; // 100 ms
+
+	private final List<Entry> m_entries = new CopyOnWriteArrayList<>();
+	private final Executor m_executor;
+	private final Thread m_thread;
+	private volatile boolean m_running = true;
+
+	private class Entry implements Runnable {
+		final Module module;
+		final AtomicBoolean inFlight = new AtomicBoolean(false);
+
+		Entry(Module module) {
+			this.module = module;
+		}
+
+		@Override
+		public void run() {
+			// tick on a pool thread, the loop waits until it is done
+			try {
+				if(module.isRunning())
+					module.getSchedule().tick(module, System.nanoTime());
+			} catch (Exception e) {
+				DebugHelper.log(e);
+			} finally {
+				inFlight.set(false);
+				wakeUp();
+			}
+		}
+	}
+
+	public ModuleTicker(String name, int priority, Executor executor) {
+		// without an executor the modules are ticked on the ticker thread
+		m_executor = executor;
+		m_thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				tickLoop();
+			}
+		}, name);
+		m_thread.setPriority(priority);
+		m_thread.setDaemon(true);
+	}
+
+	public void start() {
+		m_thread.start();
+	}
+
+	public void stop() {
+		m_running = false;
+		wakeUp();
+	}
+
+	public void wakeUp() {
+		LockSupport.unpark(m_thread);
+	}
+
+	public void add(Module module) {
+		m_entries.add(new Entry(module));
+		wakeUp();
+	}
+
+	public boolean remove(Module module) {
+		for(Entry entry : m_entries) {
+			if(entry.module == module) {
+				m_entries.remove(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return m_entries.isEmpty();
+	}
+
+	private void tickLoop() {
+		while(m_running) {
+			long now = System.nanoTime();
+			long next = now + IDLE_PERIOD;
+
+			// iterates over a snapshot, modules can be added and removed meanwhile
+			for(Entry entry : m_entries) {
+				Module module = entry.module;
+				if(!module.isRunning())
+					continue;
+
+				// a module that is still busy wakes the loop when it is done
+				if(entry.inFlight.get())
+					continue;
+
+				// nothing may end the loop, the other modules of this ticker would stop with it
+				try {
+					ModuleSchedule schedule = module.getSchedule();
+					if(schedule.isDue(now)) {
+						if(m_executor != null) {
+							entry.inFlight.set(true);
+							try {
+								m_executor.execute(entry);
+							} catch (RuntimeException e) {
+								entry.inFlight.set(false);
+								throw e;
+							}
+							continue;
+						}
+						try {
+							schedule.tick(module, now);
+						} finally {
+							now = System.nanoTime();
+						}
+					}
+
+					long deadline = schedule.getDeadline(now);
+					if(deadline - next < 0)
+						next = deadline;
+				} catch (Exception e) {
+					DebugHelper.log(e);
+				}
+			}
+
+			// sleep until the earliest deadline
+			long sleep = next - System.nanoTime();
+			if(sleep > 0)
+				LockSupport.parkNanos(sleep);
+		}
+	}
+}
@@ -7,16 +7,17 @@ import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 public class NetworkManager {
 	
 	private ServerSocket m_serverSocket;
-	private List<ClientWorker> m_clients = new ArrayList<>();
-	private List<NetworkingEventListener> m_listeners = new ArrayList<>();
-	private List<ButtonGroup> m_buttonGroups = new ArrayList<>();
+	// changed by the accepting and disconnecting threads while modules broadcast and metrics are read
+	private List<ClientWorker> m_clients = new CopyOnWriteArrayList<>();
+	private List<NetworkingEventListener> m_listeners = new CopyOnWriteArrayList<>();
+	private List<ButtonGroup> m_buttonGroups = new CopyOnWriteArrayList<>();
 
 	public NetworkManager(int port) throws IOException {
 		m_serverSocket = new ServerSocket(port);
@@ -56,6 +57,34 @@ public class NetworkManager {
 		}
 	}
 	
+	public int getClientCount() {
+		return m_clients.size();
+	}
+
+	public int getQueueDepth() {
+		// packages waiting in the outgoing queues of all clients
+		int depth = 0;
+		for(ClientWorker client : m_clients) {
+			depth += client.getQueueSize();
+		}
+		return depth;
+	}
+
+	public void registerMetrics(MetricsRegistry registry) {
+		registry.gauge("hexapod_network_clients", null, "Connected clients.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return getClientCount();
+			}
+		});
+		registry.gauge("hexapod_network_queue_depth", null, "Packages waiting to be sent to clients.", new MetricSource() {
+			@Override
+			public double getValue() {
+				return getQueueDepth();
+			}
+		});
+	}
+
 	public ServerSocket getServerSocket() {
 		return m_serverSocket;
 	}
@@ -66,12 +95,12 @@ public class NetworkManager {
 			// handle commands
 			ConsolePackage consolePackage = (ConsolePackage)pack;
 			String[] cmd = consolePackage.getText().split(" ");
-			for(NetworkingEventListener listener : new ArrayList<>(m_listeners)) {
+			for(NetworkingEventListener listener : m_listeners) {
 				listener.onCmdReceived(client, cmd);
 			}			
 		}
 		else {
-			for(NetworkingEventListener listener : new ArrayList<>(m_listeners)) {
+			for(NetworkingEventListener listener : m_listeners) {
 				listener.onDataReceived(client, pack);
 			}	
 		}
@@ -118,7 +147,7 @@ public class NetworkManager {
 	public void internalCmd(String cmd) {
 		// receive an internal command
 		String[] splitCmd = cmd.split(" ");
-		for(NetworkingEventListener listener : new ArrayList<>(m_listeners)) {
+		for(NetworkingEventListener listener : m_listeners) {
 			listener.onCmdReceived(null, splitCmd);
 		}
 	}
@@ -0,0 +1,209 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.philipp_mandler.hexapod.hexapod.Vec2i;
+import com.philipp_mandler.hexapod.hexapod.Vec3i;
+import com.philipp_mandler.hexapod.hexapod.orientation.*;
+
+import java.nio.ByteBuffer;
+
+// the chunk walks KinectWorker used before the TerrainExtractor, kept to check the extractor against them
+class OldTerrainPipeline {
+
+	private ChunkManager m_chunks;
+	private HeightMapManager m_ground;
+	private ChunkManager m_cleanedGround;
+	private BooleanMapManager m_obstacleMap;
+	private HeightMapManager m_obstacleHeightMap;
+
+	public void process(ByteBuffer kinectData) {
+		// convert depth map to voxels, the same way as the extractor
+		ChunkManager chunks = new ChunkManager();
+		TerrainExtractor.voxelize(kinectData, chunks, 0, KinectWorker.FRAME_HEIGHT);
+
+		// find ground
+		ChunkManager groundChunks = new ChunkManager();
+
+		for(Chunk chunk : chunks.getChunks()) {
+			// skip chunk if there is at least one below
+			if(hasChunkBelow(chunks, chunk)) continue;
+
+			Chunk currentChunk = chunk;
+
+			for(int x = 0; x < 64; x++) {
+				for(int z = 0; z < 64; z++) {
+					int topHeight = -1;
+					boolean foundSolid = false;
+					boolean foundGround = false;
+					Chunk foundChunk = chunk;
+					while(!foundGround) {
+						for(int y = 0; y < 64; y++) {
+							if(currentChunk.getBlock(x, y, z)) {
+								foundSolid = true;
+								topHeight = y;
+								foundChunk = currentChunk;
+							}
+							else {
+								if(foundSolid) {
+									foundGround = true;
+									break;
+								}
+							}
+						}
+
+						// continue at chunk above
+						if(!foundGround) {
+							currentChunk = getChunkAbove(chunks, currentChunk);
+							if(currentChunk == null)
+								break;
+						}
+					}
+					if(topHeight != -1) {
+						groundChunks.setBlock(new Vec3i(x + (foundChunk.getOrigin().getX() * 64), topHeight + (foundChunk.getOrigin().getY() * 64), z + (foundChunk.getOrigin().getZ() * 64)), true);
+					}
+					currentChunk = chunk;
+				}
+			}
+		}
+
+		// clean ground voxels
+		HeightMapManager ground = new HeightMapManager();
+		ChunkManager cleanedGroundChunks = new ChunkManager();
+
+		for(Chunk chunk : groundChunks.getChunks()) {
+			// skip chunk if there is at least one below
+			if(hasChunkBelow(chunks, chunk)) continue;
+
+			Chunk currentChunk = chunk;
+
+			for(int x = 0; x < 64; x++) {
+				for(int z = 0; z < 64; z++) {
+					boolean foundGround = false;
+					while(!foundGround) {
+						for(int y = 0; y < 64; y++) {
+							if(currentChunk.getBlock(x, y, z)) {
+								foundGround = true;
+								Vec3i globalPos = new Vec3i(x + currentChunk.getOrigin().getX() * 64, y + currentChunk.getOrigin().getY() * 64, z + currentChunk.getOrigin().getZ() * 64);
+								int blockAround = 0;
+								for(int i = -1; i <= 1; i++) {
+									for(int j = -1; j <= 1; j++) {
+										for(int k = -1; k <= 1; k++) {
+											if(i == 0 && j == 0 && k == 0) continue;
+											if(groundChunks.getBlock(globalPos.getX() + i, globalPos.getY() + j, globalPos.getZ() + k)) blockAround++;
+										}
+									}
+								}
+								if(blockAround > 2) {
+									cleanedGroundChunks.setBlock(globalPos, true);
+									ground.setHeight(new Vec2i(globalPos.getX(), globalPos.getZ()), globalPos.getY());
+								}
+							}
+						}
+
+						// continue at chunk above, the ground chunk is climbed through the voxel chunks
+						if(!foundGround) {
+							currentChunk = getChunkAbove(chunks, currentChunk);
+							if(currentChunk == null)
+								break;
+						}
+					}
+					currentChunk = chunk;
+				}
+			}
+		}
+
+		// hide everything at or below the ground
+		ChunkManager obstacles = new ChunkManager();
+
+		for(Chunk chunk : chunks.getChunks()) {
+			for(int x = 0; x < 64; x++) {
+				for(int y = 0; y < 64; y++) {
+					for(int z = 0; z < 64; z++) {
+						if(chunk.getBlock(x, y, z)) {
+							Vec3i globalPos = new Vec3i(x + 64 * chunk.getOrigin().getX(), y + 64 * chunk.getOrigin().getY(), z + 64 * chunk.getOrigin().getZ());
+							Integer groundHeight = ground.getHeight(new Vec2i(globalPos.getX(), globalPos.getZ()));
+							if(groundHeight == null || globalPos.getY() > groundHeight)
+								obstacles.setBlock(globalPos, true);
+						}
+					}
+				}
+			}
+		}
+
+		// obstacle map from the obstacle chunks
+		BooleanMapManager obstacleMap = new BooleanMapManager();
+		HeightMapManager obstacleHeightMap = new HeightMapManager();
+
+		for(Chunk chunk : obstacles.getChunks()) {
+			// skip chunk if there is at least one below
+			if(hasChunkBelow(chunks, chunk)) continue;
+
+			Chunk currentChunk = chunk;
+
+			for(int x = 0; x < 64; x++) {
+				for(int z = 0; z < 64; z++) {
+					boolean foundGround = false;
+					while(!foundGround) {
+						for(int y = 0; y < 64; y++) {
+							if(currentChunk.getBlock(x, y, z)) {
+								foundGround = true;
+								Vec3i globalPos = new Vec3i(x + currentChunk.getOrigin().getX() * 64, y + currentChunk.getOrigin().getY() * 64, z + currentChunk.getOrigin().getZ() * 64);
+								obstacleHeightMap.setHeight(new Vec2i(globalPos.getX(), globalPos.getZ()), globalPos.getY());
+								obstacleMap.setValue(new Vec2i(globalPos.getX(), globalPos.getZ()), true);
+							}
+						}
+
+						// continue at chunk above
+						if(!foundGround) {
+							currentChunk = getChunkAbove(chunks, currentChunk);
+							if(currentChunk == null)
+								break;
+						}
+					}
+					currentChunk = chunk;
+				}
+			}
+		}
+
+		m_chunks = chunks;
+		m_ground = ground;
+		m_cleanedGround = cleanedGroundChunks;
+		m_obstacleMap = obstacleMap;
+		m_obstacleHeightMap = obstacleHeightMap;
+	}
+
+	private static boolean hasChunkBelow(ChunkManager chunks, Chunk chunk) {
+		// check if there is a chunk below, every chunk is compared
+		for(Chunk tmpChunk : chunks.getChunks()) {
+			if(tmpChunk.getOrigin().getX() == chunk.getOrigin().getX() && tmpChunk.getOrigin().getZ() == chunk.getOrigin().getZ()) {
+				if(tmpChunk.getOrigin().getY() < chunk.getOrigin().getY())
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private static Chunk getChunkAbove(ChunkManager chunks, Chunk chunk) {
+		return chunks.getChunkAt(new Vec3i(chunk.getOrigin().getX(), chunk.getOrigin().getY() + 1, chunk.getOrigin().getZ()));
+	}
+
+	public ChunkManager getChunks() {
+		return m_chunks;
+	}
+
+	public HeightMapManager getGround() {
+		return m_ground;
+	}
+
+	public ChunkManager getCleanedGround() {
+		return m_cleanedGround;
+	}
+
+	public BooleanMapManager getObstacleMap() {
+		return m_obstacleMap;
+	}
+
+	public HeightMapManager getObstacleHeightMap() {
+		return m_obstacleHeightMap;
+	}
+
+}
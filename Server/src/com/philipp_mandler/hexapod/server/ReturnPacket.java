@@ -1,28 +1,58 @@
 package com.philipp_mandler.hexapod.server;
 
-import java.util.ArrayList;
-
 class ReturnPacket {
+
+	// length byte counts error, params and checksum
+	public final static int MAX_PARAMS = 255 - 2;
+
 	public int id;
 	public int length;
 	public int error;
-	public ArrayList<Integer> param;
+
+	private final byte[] m_params = new byte[MAX_PARAMS];
+	private int m_paramCount = 0;
+	private int m_sum = 0;
 
 	public ReturnPacket() {
 		id = -1;
 		length = 0;
-		param = new ArrayList<>();
 	}
 
-	public int checksum() {
-		int ret = 0;
-		ret += id;
-		ret += length;
-		ret += error;
+	public void clear() {
+		// drop the params, the checksum restarts with the header
+		m_paramCount = 0;
+		m_sum = id + length + error;
+	}
+
+	public void add(int value) {
+		m_params[m_paramCount++] = (byte) value;
+		m_sum += value & 0xFF;
+	}
 
-		for (Integer aParam : param) ret += aParam;
+	public int getParamCount() {
+		return m_paramCount;
+	}
+
+	public int getParam(int index) {
+		return m_params[index] & 0xFF;
+	}
+
+	public int getWord(int index) {
+		// low byte first
+		return getParam(index) + (getParam(index + 1) << 8);
+	}
+
+	public void copyFrom(ReturnPacket packet) {
+		id = packet.id;
+		length = packet.length;
+		error = packet.error;
+		m_paramCount = packet.m_paramCount;
+		m_sum = packet.m_sum;
+		System.arraycopy(packet.m_params, 0, m_params, 0, m_paramCount);
+	}
 
-		return ServoController.calcChecksum(ret);
+	public int checksum() {
+		return ServoController.calcChecksum(m_sum);
 	}
 
 	public String toString() {
@@ -30,8 +60,8 @@ class ReturnPacket {
 		retStr += "id: " + id + "\n";
 		retStr += "length: " + length + "\n";
 		retStr += "error: " + error + "\n";
-		for (int i = 0; i < param.size(); i++)
-			retStr += "param" + i + ": " + param.get(i) + "\n";
+		for (int i = 0; i < m_paramCount; i++)
+			retStr += "param" + i + ": " + getParam(i) + "\n";
 
 		return retStr;
 	}
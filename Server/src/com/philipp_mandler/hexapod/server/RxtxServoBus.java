@@ -0,0 +1,113 @@
+package com.philipp_mandler.hexapod.server;
+
+import gnu.io.CommPortIdentifier;
+import gnu.io.NoSuchPortException;
+import gnu.io.PortInUseException;
+import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+import gnu.io.UnsupportedCommOperationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.TooManyListenersException;
+
+public class RxtxServoBus implements ServoBus {
+
+	private SerialPort m_serial;
+	private InputStream m_serialInputStream;
+	private OutputStream m_serialOutputStream;
+	private final byte[] m_receiveBuffer = new byte[256];
+	private volatile ServoBusListener m_listener;
+	private int m_baudRate;
+
+	public RxtxServoBus(String serialDev, int baudRate) throws PortInUseException, UnsupportedCommOperationException, NoSuchPortException, IOException {
+		try {
+			m_serial = (SerialPort) CommPortIdentifier.getPortIdentifier(serialDev).open("Dynamixel", 5000);
+			m_serial.setSerialPortParams(baudRate, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+			m_serial.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
+			m_serialInputStream = m_serial.getInputStream();
+			m_serialOutputStream = m_serial.getOutputStream();
+			m_baudRate = baudRate;
+
+			// parse incoming status packets as soon as RXTX reports data
+			m_serial.addEventListener(new SerialPortEventListener() {
+				@Override
+				public void serialEvent(SerialPortEvent event) {
+					if(event.getEventType() == SerialPortEvent.DATA_AVAILABLE)
+						receive();
+				}
+			});
+			m_serial.notifyOnDataAvailable(true);
+		} catch (PortInUseException e) {
+			DebugHelper.log("Serial: Port already in use.");
+			throw e;
+		} catch (NoSuchPortException e) {
+			DebugHelper.log("Serial: No such port.");
+			throw e;
+		} catch (IOException e) {
+			DebugHelper.log("Serial: Could not get input or output stream.");
+			throw e;
+		} catch (UnsupportedCommOperationException e) {
+			DebugHelper.log("Serial: Could not set port parameters.");
+			throw e;
+		} catch (TooManyListenersException e) {
+			DebugHelper.log("Serial: Could not register data listener.");
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void setListener(ServoBusListener listener) {
+		m_listener = listener;
+	}
+
+	@Override
+	public boolean write(byte[] data, int offset, int length) {
+		if (m_serialOutputStream == null)
+			return false;
+		try {
+			m_serialOutputStream.write(data, offset, length);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public int getBaudRate() {
+		return m_baudRate;
+	}
+
+	@Override
+	public void close() {
+		if (m_serial != null) {
+			m_serial.removeEventListener();
+			m_serial.close();
+		}
+	}
+
+	public SerialPort getSerialPort() {
+		return m_serial;
+	}
+
+	private void receive() {
+		// drain the input stream and hand the bytes to the listener
+		if (m_serialInputStream == null)
+			return;
+		try {
+			int available;
+			while ((available = m_serialInputStream.available()) > 0) {
+				int count = m_serialInputStream.read(m_receiveBuffer, 0, Math.min(available, m_receiveBuffer.length));
+				if (count <= 0)
+					break;
+				ServoBusListener listener = m_listener;
+				if (listener != null)
+					listener.onDataReceived(m_receiveBuffer, 0, count);
+			}
+		} catch (IOException e) {
+			DebugHelper.log(e);
+		}
+	}
+}
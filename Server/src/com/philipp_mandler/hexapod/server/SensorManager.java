@@ -66,6 +66,10 @@ public class SensorManager {
 		return null;
 	}
 
+	public int getDeviceCount() {
+		return m_context.numDevices();
+	}
+
 	public Device getKinect() {
 		return m_kinect;
 	}
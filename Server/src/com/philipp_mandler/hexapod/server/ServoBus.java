@@ -0,0 +1,8 @@
+package com.philipp_mandler.hexapod.server;
+
+public interface ServoBus {
+	public void setListener(ServoBusListener listener);
+	public boolean write(byte[] data, int offset, int length);
+	public int getBaudRate();
+	public void close();
+}
@@ -0,0 +1,7 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.EventListener;
+
+public interface ServoBusListener extends EventListener {
+	public void onDataReceived(byte[] data, int offset, int length);
+}
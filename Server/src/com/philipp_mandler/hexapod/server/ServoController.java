@@ -1,14 +1,11 @@
 package com.philipp_mandler.hexapod.server;
 
-import gnu.io.CommPortIdentifier;
 import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
 import gnu.io.SerialPort;
 import gnu.io.UnsupportedCommOperationException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 
 public class ServoController {
@@ -18,6 +15,9 @@ public class ServoController {
 
 	public final static int DX_LAST_ID = 0xFD;
 
+	// highest return delay time, 254 * 2 us
+	public final static long MAX_RETURN_DELAY = 508000L;
+
 	// errors
 	public final static int DX_ERROR_NO = 0;
 	public final static int DX_ERROR_INVOLT = 1;
@@ -41,6 +41,7 @@ public class ServoController {
 	public final static int DX_INST_ACTION = 0x05;
 	public final static int DX_INST_RESET = 0x06;
 	public final static int DX_INST_SYNC_WRITE = 0x83;
+	public final static int DX_INST_BULK_READ = 0x92;
 
 	// commands
 	public final static int DX_CMD_MODELNR = 0x00;
@@ -111,40 +112,97 @@ public class ServoController {
 
 	protected final Object m_lock = new Object();
 
-	private SerialPort m_serial;
-	private InputStream m_serialInputStream;
-	private OutputStream m_serialOutputStream;
-	private int m_curChecksum;
+	private ServoBus m_bus;
+	private final byte[] m_singleByte = new byte[1];
 	private int m_error;
-	private int m_timeout = 40;
-	private int m_delay = 2;
+	private long m_timeout = 80000000L; // 80 ms
+	private long m_pingTimeout = 160000000L; // 160 ms
 	private ReturnPacket m_returnPacket = new ReturnPacket();
+	private final InstructionPacket m_packet = new InstructionPacket();
+	private final StatusReceiver m_receiver = new StatusReceiver(32);
 	private boolean m_initialized = false;
+	private boolean m_bulkRead = true;
+	private int m_baudRate = 0;
+
+	// bulk read falls back to single reads after some failed cycles in a row and is retried from time to time
+	private final static int BULK_READ_FAILURES = 5;
+	private long m_bulkReadRetry = 5000000000L; // 5 s
+	private int m_bulkReadFailures = 0;
+	private long m_bulkReadFallback = 0;
+
+	// discovery results
+	private final boolean[] m_present = new boolean[DX_BROADCAST_ID];
+	private final boolean[] m_discovered = new boolean[DX_BROADCAST_ID];
+	private final boolean[] m_missed = new boolean[DX_BROADCAST_ID];
+	private long m_discoveryMargin = 2000000L; // 2 ms
+	private long m_discoveryWindow = 0;
+
+	// metrics
+	private volatile long m_bytesSent = 0;
+	private volatile long m_bytesReceived = 0;
+	private final LatencyHistogram[] m_readLatency = new LatencyHistogram[DX_BROADCAST_ID];
+	private final ControlTableMirror m_mirror = new ControlTableMirror();
+
+	// last single write, applied to the mirror once the servo confirmed it
+	private int m_writeID = -1;
+	private int m_writeAddress;
+	private int m_writeLength;
+	private int m_writeValue;
+	private boolean m_writeRegistered;
 
 	public ServoController() {
 
 	}
 
 	public void init(String serialDev, int baudRate) throws PortInUseException, UnsupportedCommOperationException, NoSuchPortException, IOException {
-		try {
-			m_serial = (SerialPort) CommPortIdentifier.getPortIdentifier(serialDev).open("Dynamixel", 5000);
-			m_serial.setSerialPortParams(baudRate, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
-			m_serial.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
-			m_serialInputStream = m_serial.getInputStream();
-			m_serialOutputStream = m_serial.getOutputStream();
+		// the port name selects the transport
+		if (serialDev.startsWith(SimulatedServoBus.PREFIX)) {
+			init(SimulatedServoBus.fromString(serialDev, baudRate));
+		} else if (serialDev.startsWith(FileChannelServoBus.PREFIX)) {
+			try {
+				init(new FileChannelServoBus(serialDev.substring(FileChannelServoBus.PREFIX.length()), baudRate));
+			} catch (IOException e) {
+				DebugHelper.log("Serial: Could not open " + serialDev + ".");
+				throw e;
+			}
+		} else {
+			init(new RxtxServoBus(serialDev, baudRate));
+		}
+	}
+
+	public void init(ServoBus bus) {
+		synchronized (m_lock) {
+			if (m_bus != null)
+				m_bus.close();
+
+			m_bus = bus;
+			m_baudRate = bus.getBaudRate();
+
+			// parse incoming status packets as soon as the bus reports data
+			m_bus.setListener(new ServoBusListener() {
+				@Override
+				public void onDataReceived(byte[] data, int offset, int length) {
+					m_bytesReceived += length;
+					m_receiver.receive(data, offset, length);
+				}
+			});
+
+			// nothing is known about the servos on a new bus
+			m_mirror.invalidateAll();
+			for (int i = 0; i < m_discovered.length; i++) {
+				m_discovered[i] = false;
+			}
+
 			m_initialized = true;
-		} catch (PortInUseException e) {
-			DebugHelper.log("Serial: Port already in use.");
-			throw e;
-		} catch (NoSuchPortException e) {
-			DebugHelper.log("Serial: No such port.");
-			throw e;
-		} catch (IOException e) {
-			DebugHelper.log("Serial: Could not get input or output stream.");
-			throw e;
-		} catch (UnsupportedCommOperationException e) {
-			DebugHelper.log("Serial: Could not set port parameters.");
-			throw e;
+		}
+	}
+
+	public void close() {
+		synchronized (m_lock) {
+			if (m_bus != null)
+				m_bus.close();
+			m_bus = null;
+			m_initialized = false;
 		}
 	}
 
@@ -152,26 +210,39 @@ public class ServoController {
 		return m_initialized;
 	}
 
+	public ServoBus getBus() {
+		return m_bus;
+	}
+
 	public boolean write(int data) {
-		if (m_serialOutputStream == null)
-			return false;
-		try {
-			m_serialOutputStream.write(data);
-			return true;
-		} catch (IOException e) {
+		if (m_bus == null)
 			return false;
-		}
+		m_singleByte[0] = (byte) data;
+		return m_bus.write(m_singleByte, 0, 1);
 	}
 
-	public int read() {
-		if (m_serialInputStream == null)
-			return 0;
-		try {
-			return m_serialInputStream.read();
-		} catch (IOException e) {
-			DebugHelper.log(e);
-		}
-		return 0;
+	protected boolean send(InstructionPacket packet) {
+		return send(packet, true);
+	}
+
+	private boolean send(InstructionPacket packet, boolean clearReplies) {
+		// replies to earlier instructions are stale from now on, except while discovering
+		if (clearReplies)
+			m_receiver.clear();
+		m_writeID = -1;
+
+		// flush a complete instruction packet in one write
+		m_bytesSent += packet.getSize();
+		return packet.writeTo(m_bus);
+	}
+
+	public void setTimeout(long timeout) {
+		// status packet timeout in nanoseconds
+		m_timeout = timeout;
+	}
+
+	public long getTimeout() {
+		return m_timeout;
 	}
 
 	public int error() {
@@ -179,7 +250,9 @@ public class ServoController {
 	}
 
 	public SerialPort serial() {
-		return m_serial;
+		if (m_bus instanceof RxtxServoBus)
+			return ((RxtxServoBus) m_bus).getSerialPort();
+		return null;
 	}
 
 
@@ -277,27 +350,11 @@ public class ServoController {
 	}
 
 	public int modelNr(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_MODELNR, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_MODELNR, 2);
 	}
 
 	public int firmware(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_FIRMWARE, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_FIRMWARE, 1);
 	}
 
 	public boolean setId(int id, int newId) {
@@ -322,15 +379,7 @@ public class ServoController {
 	}
 
 	public int baudrate(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_BAUDRATE, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_BAUDRATE, 1);
 	}
 
 	public boolean setDelayTime(int id, int delayTime) {
@@ -343,15 +392,7 @@ public class ServoController {
 	}
 
 	public int delayTime(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_DELAYTIME, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_DELAYTIME, 1);
 	}
 
 	public boolean setHighLimitTemp(int id, int limitTemp) {
@@ -364,15 +405,7 @@ public class ServoController {
 	}
 
 	public int highLimitTemp(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_HIGH_LIMIT_TEMP, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_HIGH_LIMIT_TEMP, 1);
 	}
 
 	public boolean setLowLimitVolt(int id, int limitVolt) {
@@ -385,15 +418,7 @@ public class ServoController {
 	}
 
 	public int lowLimitVolt(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_LOW_LIMIT_VOLT, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_LOW_LIMIT_VOLT, 1);
 	}
 
 	public boolean setHightLimitVolt(int id, int limitVolt) {
@@ -406,15 +431,7 @@ public class ServoController {
 	}
 
 	public int highLimitVolt(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_HIGH_LIMIT_VOLT, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_HIGH_LIMIT_VOLT, 1);
 	}
 
 	public boolean setMaxTorque(int id, int maxTorque) {
@@ -427,15 +444,7 @@ public class ServoController {
 	}
 
 	public int maxTorque(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_MAX_TORQUE, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return (m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_MAX_TORQUE, 2);
 	}
 
 	public boolean setStatusReturnLevel(int id, int statusReturnLevel) {
@@ -450,15 +459,7 @@ public class ServoController {
 	}
 
 	public int statusReturnLevel(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_STATUSRETURNLEVEL, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_STATUSRETURNLEVEL, 1);
 	}
 
 	public boolean setAlarmLed(int id, int alarmLed) {
@@ -471,15 +472,7 @@ public class ServoController {
 	}
 
 	public int alarmLed(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_ALARM_LED, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_ALARM_LED, 1);
 	}
 
 	public boolean setAlarmShutdown(int id, int alarmShutdown) {
@@ -492,96 +485,162 @@ public class ServoController {
 	}
 
 	public int alarmShutdown(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_ALARM_SHUTDOWN, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return (m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_ALARM_SHUTDOWN, 1);
 	}
 
 	// resets the servo to the default factory settings!
 	public boolean reset(int id) {
 		synchronized (m_lock) {
 
-			m_curChecksum = 0;
+			// no param
+			send(m_packet.begin(id, DX_INST_ACTION).finish());
 
-			write(DX_BEGIN);
-			write(DX_BEGIN);
+			// all values are back to the factory settings
+			m_mirror.invalidate(id);
 
-			// id
-			write(id);
-			m_curChecksum += id;
+			// handle reply
 
-			// length
-			write(2);
-			m_curChecksum += 2;
+			return handleReturnStatus(id);
+		}
+	}
 
-			// instruction
-			write(DX_INST_ACTION);
-			m_curChecksum += DX_INST_ACTION;
+	public synchronized boolean ping(int id) {
+		return ping(id, m_pingTimeout);
+	}
 
-			// no param
+	private boolean ping(int id, long timeout) {
+		synchronized (m_lock) {
 
-			// checksum
-			write(calcChecksum(m_curChecksum));
+			// no param
+			send(m_packet.begin(id, DX_INST_PING).finish());
 
 			// handle reply
+			long oldTimeout = m_timeout;
+			m_timeout = timeout;
+			boolean ret = handleReturnStatus(id);
+			m_timeout = oldTimeout;
 
-			return handleReturnStatus(id);
+			if (id >= 0 && id < DX_BROADCAST_ID) {
+				m_present[id] = ret;
+				m_discovered[id] = true;
+				m_missed[id] = false;
+			}
+
+			return ret;
 		}
 	}
 
-	public synchronized boolean ping(int id) {
+	public boolean isPresent(int id) {
+		// cached result of the last discovery or ping
 		synchronized (m_lock) {
+			if (id < 0 || id >= DX_BROADCAST_ID)
+				return false;
+			if (m_missed[id])
+				// one more try within the window of the discovery, the result is cached either way
+				return ping(id, m_discoveryWindow);
+			if (!m_discovered[id])
+				return ping(id);
+			return m_present[id];
+		}
+	}
 
-			m_curChecksum = 0;
+	public synchronized int[] discover(int start, int end) {
+		// protocol 1.0 servos ignore a broadcast ping, so every id is pinged on its own
+		// with a deadline derived from the wire time instead of the full ping timeout
+		// missing servos are pinged once more by isPresent before they are cached as missing
+		if (start < 0)
+			start = 0;
+		if (end > DX_LAST_ID)
+			end = DX_LAST_ID;
 
-			write(DX_BEGIN);
-			write(DX_BEGIN);
+		synchronized (m_lock) {
+			long minTimeout = discoveryTimeout();
+			long timeout = minTimeout;
+			long roundTrip = 0;
 
-			// id
-			write(id);
-			m_curChecksum += id;
+			// replies of earlier instructions aren't pings, the pings don't clear the receiver
+			m_receiver.clear();
+			for (int id = start; id <= end; id++) {
+				m_present[id] = false;
+			}
 
-			// length
-			write(2);
-			m_curChecksum += 2;
+			for (int id = start; id <= end; id++) {
+				long sent = System.nanoTime();
+				send(m_packet.begin(id, DX_INST_PING).finish(), false);
+
+				long deadline = sent + timeout;
+				long now;
+				while ((now = System.nanoTime()) < deadline) {
+					if (m_receiver.poll(m_returnPacket, deadline - now) != StatusReceiver.RECEIVE_OK)
+						break;
+
+					// late replies are attributed to the servo that sent them
+					int replyID = m_returnPacket.id;
+					if (replyID >= start && replyID <= end) {
+						m_present[replyID] = true;
+					}
+
+					if (replyID == id) {
+						// adapt the deadline to the smoothed round-trip time, a single slow reply decays again
+						long sample = System.nanoTime() - sent;
+						roundTrip = roundTrip == 0 ? sample : roundTrip + (sample - roundTrip) / 4;
+						timeout = Math.min(m_pingTimeout, Math.max(minTimeout, roundTrip * 2));
+						break;
+					}
+				}
+			}
 
-			// instruction
-			write(DX_INST_PING);
-			m_curChecksum += DX_INST_PING;
+			// collect replies that are still on their way
+			long deadline = System.nanoTime() + timeout;
+			long now;
+			while ((now = System.nanoTime()) < deadline) {
+				if (m_receiver.poll(m_returnPacket, deadline - now) != StatusReceiver.RECEIVE_OK)
+					break;
+				if (m_returnPacket.id >= start && m_returnPacket.id <= end)
+					m_present[m_returnPacket.id] = true;
+			}
 
-			// no param
+			m_discoveryWindow = timeout;
 
-			// checksum
-			write(calcChecksum(m_curChecksum));
+			int count = 0;
+			for (int id = start; id <= end; id++) {
+				// a missing reply could just be late, it is only cached after the next ping
+				m_discovered[id] = m_present[id];
+				m_missed[id] = !m_present[id];
+				if (m_present[id])
+					count++;
+			}
 
-			// handle reply
-			int oldTimeout = m_timeout;
-			m_timeout = 80;
-			boolean ret = handleReturnStatus(id);
-			m_timeout = oldTimeout;
+			int[] retArray = new int[count];
+			count = 0;
+			for (int id = start; id <= end; id++) {
+				if (m_present[id])
+					retArray[count++] = id;
+			}
 
-			return ret;
+			return retArray;
 		}
 	}
 
-	public synchronized int[] pingAll() {
-		ArrayList<Integer> servoList = new ArrayList<>();
-		for (int i = 0; i < DX_LAST_ID; i++) {
-			if (ping(i))
-				servoList.add(i);
-		}
+	private long discoveryTimeout() {
+		// ping and status packet are 6 bytes each, 10 bits per byte on the wire
+		if (m_baudRate <= 0)
+			return m_pingTimeout;
+		long byteTime = 10000000000L / m_baudRate;
+		return 12 * byteTime + MAX_RETURN_DELAY + m_discoveryMargin;
+	}
+
+	public void setDiscoveryMargin(long margin) {
+		// extra time in nanoseconds for adapter latency
+		m_discoveryMargin = margin;
+	}
 
-		int[] retArray = new int[servoList.size()];
-		for (int i = 0; i < servoList.size(); i++)
-			retArray[i] = servoList.get(i);
+	public long getDiscoveryMargin() {
+		return m_discoveryMargin;
+	}
 
-		return retArray;
+	public synchronized int[] pingAll() {
+		return discover(0, DX_LAST_ID - 1);
 	}
 
 	public synchronized int[] pingRange(int start, int end) {
@@ -590,43 +649,14 @@ public class ServoController {
 		if (end > DX_LAST_ID)
 			end = DX_LAST_ID;
 
-		ArrayList<Integer> servoList = new ArrayList<>();
-		for (int i = start; i <= end; i++) {
-			if (ping(i))
-				servoList.add(i);
-		}
-
-		int[] retArray = new int[servoList.size()];
-		for (int i = 0; i < servoList.size(); i++)
-			retArray[i] = servoList.get(i);
-
-		return retArray;
+		return discover(start, end);
 	}
 
 
 	public synchronized boolean action(int id) {
 		synchronized (m_lock) {
-			m_curChecksum = 0;
-
-			write(DX_BEGIN);
-			write(DX_BEGIN);
-
-			// id
-			write(id);
-			m_curChecksum += id;
-
-			// length
-			write(2);
-			m_curChecksum += 2;
-
-			// instruction
-			write(DX_INST_ACTION);
-			m_curChecksum += DX_INST_ACTION;
-
 			// no param
-
-			// checksum
-			write(calcChecksum(m_curChecksum));
+			send(m_packet.begin(id, DX_INST_ACTION).finish());
 
 			return id == DX_BROADCAST_ID || handleReturnStatus(id);
 		}
@@ -651,74 +681,63 @@ public class ServoController {
 
 	public boolean syncWrite(int address, int length, int[] idList, int[][] dataList) {
 		synchronized (m_lock) {
-			int curChecksum = 0;
-
-			write(DX_BEGIN);
-			write(DX_BEGIN);
-
-			// id
-			write(DX_BROADCAST_ID);
-			curChecksum += DX_BROADCAST_ID;
-
-			// length
-			int l = (length + 1) * idList.length + 4;
+			m_packet.begin(DX_BROADCAST_ID, DX_INST_SYNC_WRITE);
 
-			write(l);
-			curChecksum += l;  // 3 bytes param
-
-			// instruction
-			write(DX_INST_SYNC_WRITE);
-			curChecksum += DX_INST_SYNC_WRITE;
-
-			// param - address
-			write(address);
-			curChecksum += address;
-
-			// param - length
-			write(length);
-			curChecksum += length;
+			// param - address and data length per servo
+			m_packet.add(address);
+			m_packet.add(length);
 
 			// write data
+			long now = System.nanoTime();
 			for (int i = 0; i < idList.length; i++) {
 				// param - id
-				write(idList[i]);
-				curChecksum += idList[i];
+				m_packet.add(idList[i]);
 
+				int value = 0;
 				for (int j = 0; j < length; j++) {
 					// param - data
-					write(dataList[i][j]);
-					curChecksum += dataList[i][j];
+					m_packet.add(dataList[i][j]);
+					value |= (dataList[i][j] & 0xFF) << (8 * j);
 				}
+				m_mirror.put(idList[i], address, length, value, now);
 			}
 
-			// checksum
-			write(calcChecksum(curChecksum));
+			send(m_packet.finish());
 
 			// no return because of broadcast sending
 			return false;
 		}
 	}
 
-	public boolean syncWriteGoalPosition(int[] idList, int[] posList) {
-		int[][] dataList = new int[idList.length][2];
-		for (int i = 0; i < idList.length; i++) {
-			dataList[i] = new int[2];
-			dataList[i][0] = posList[i] & 0x00FF;
-			dataList[i][1] = (posList[i] & 0xFF00) >> 8;
+	public boolean syncWriteWords(int address, int[] idList, int[] valueList, int count) {
+		// encode the first count 2 byte values straight into the packet buffer
+		synchronized (m_lock) {
+			m_packet.begin(DX_BROADCAST_ID, DX_INST_SYNC_WRITE);
+
+			// param - address and data length per servo
+			m_packet.add(address);
+			m_packet.add(2);
+
+			long now = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				m_packet.add(idList[i]);
+				m_packet.addWord(valueList[i]);
+				m_mirror.put(idList[i], address, 2, valueList[i] & 0xFFFF, now);
+			}
+
+			send(m_packet.finish());
+
+			// no return because of broadcast sending
+			return false;
 		}
+	}
 
-		return syncWrite(DX_CMD_GOAL_POS, 2, idList, dataList);
+	public boolean syncWriteGoalPosition(int[] idList, int[] posList) {
+		return syncWriteWords(DX_CMD_GOAL_POS, idList, posList, idList.length);
 	}
 
 	public boolean syncWriteMovingSpeed(int[] idList, int[] speedList) {
-		int[][] dataList = new int[idList.length][2];
-		for (int i = 0; i < idList.length; i++) {
-			dataList[i] = new int[2];
-			dataList[i][0] = speedList[i] & 0x00FF;
-			dataList[i][1] = (speedList[i] & 0xFF00) >> 8;
-		}
-
-		return syncWrite(DX_CMD_MOV_SPEED, 2, idList, dataList);
+		return syncWriteWords(DX_CMD_MOV_SPEED, idList, speedList, idList.length);
 	}
 
 	public boolean syncWriteMovingSpeed(int[] idList, int speed) {
@@ -752,6 +771,93 @@ public class ServoController {
 		return syncWrite(DX_CMD_TORQUE_ENABLE, 1, idList, dataList);
 	}
 
+	public boolean presentStatus(int id, ServoStatus status) {
+		// read position, speed, load, voltage and temperature with one instruction
+		synchronized (m_lock) {
+			long start = System.nanoTime();
+			readData(id, ServoStatus.ADDRESS, ServoStatus.LENGTH);
+			if (handleReturnStatus(id) && m_returnPacket.getParamCount() == ServoStatus.LENGTH) {
+				long now = System.nanoTime();
+				recordReadLatency(id, now - start);
+				m_mirror.put(id, ServoStatus.ADDRESS, m_returnPacket, now);
+				status.set(id, m_returnPacket);
+				return true;
+			}
+			status.invalidate(id);
+			return false;
+		}
+	}
+
+	public boolean bulkReadStatus(int[] idList, ServoStatus[] statusList) {
+		synchronized (m_lock) {
+			if (!m_bulkRead || (m_bulkReadFailures >= BULK_READ_FAILURES && System.nanoTime() - m_bulkReadFallback < m_bulkReadRetry)) {
+				// fall back to back-to-back reads
+				boolean ret = true;
+				for (int i = 0; i < idList.length; i++) {
+					ret &= presentStatus(idList[i], statusList[i]);
+				}
+				return ret;
+			}
+
+			// bulk read is only understood by the mx series
+			m_packet.begin(DX_BROADCAST_ID, DX_INST_BULK_READ);
+			m_packet.add(0x00);
+			for (int id : idList) {
+				m_packet.add(ServoStatus.LENGTH);
+				m_packet.add(id);
+				m_packet.add(ServoStatus.ADDRESS);
+			}
+			send(m_packet.finish());
+
+			// the servos answer one after another in the requested order
+			int received = 0;
+			for (int i = 0; i < idList.length; i++) {
+				if (handleReturnStatus(idList[i]) && m_returnPacket.getParamCount() == ServoStatus.LENGTH) {
+					m_mirror.put(idList[i], ServoStatus.ADDRESS, m_returnPacket, System.nanoTime());
+					statusList[i].set(idList[i], m_returnPacket);
+					received++;
+				} else {
+					statusList[i].invalidate(idList[i]);
+				}
+			}
+
+			if (received == 0 && idList.length > 0) {
+				// a single cycle without answers could be noise on the bus
+				if (++m_bulkReadFailures == BULK_READ_FAILURES)
+					DebugHelper.log("Servo: No answer to bulk read, reading servos one by one.", Log.WARNING);
+				if (m_bulkReadFailures >= BULK_READ_FAILURES) {
+					m_bulkReadFallback = System.nanoTime();
+					return bulkReadStatus(idList, statusList);
+				}
+				return false;
+			}
+
+			if (m_bulkReadFailures >= BULK_READ_FAILURES)
+				DebugHelper.log("Servo: Bulk read answered again.", Log.INFO);
+			m_bulkReadFailures = 0;
+
+			return received == idList.length;
+		}
+	}
+
+	public void setBulkReadEnabled(boolean enable) {
+		synchronized (m_lock) {
+			m_bulkRead = enable;
+			m_bulkReadFailures = 0;
+		}
+	}
+
+	public boolean bulkReadEnabled() {
+		// false while falling back to single reads
+		synchronized (m_lock) {
+			return m_bulkRead && m_bulkReadFailures < BULK_READ_FAILURES;
+		}
+	}
+
+	public void setBulkReadRetry(long nanos) {
+		m_bulkReadRetry = nanos;
+	}
+
 	public boolean setWheelMode(int id, boolean enable, int modelNr) {
 		if (enable) {   // on
 			return setAngleLimitCW(id, 0) &&
@@ -778,15 +884,7 @@ public class ServoController {
 	}
 
 	public int angleLimitCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_CW_ANGLE_LIMIT, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_CW_ANGLE_LIMIT, 2);
 	}
 
 	public boolean setAngleLimitCCW(int id, int limit) {
@@ -799,15 +897,7 @@ public class ServoController {
 	}
 
 	public int angleLimitCCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_CCW_ANGLE_LIMIT, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_CCW_ANGLE_LIMIT, 2);
 	}
 
 	public boolean setMovingSpeed(int id, int speed) {
@@ -820,15 +910,7 @@ public class ServoController {
 	}
 
 	public int movingSpeed(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_MOV_SPEED, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_MOV_SPEED, 2);
 	}
 
 	public boolean setTorqueLimit(int id, int torqueLimit) {
@@ -841,15 +923,7 @@ public class ServoController {
 	}
 
 	public int torqueLimit(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_LIMIT_TORQUE, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_LIMIT_TORQUE, 2);
 	}
 
 	// mx commands
@@ -863,15 +937,7 @@ public class ServoController {
 	}
 
 	public int dGain(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_D_GAIN, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_D_GAIN, 1);
 	}
 
 	public boolean setIGain(int id, int gain) {
@@ -884,15 +950,7 @@ public class ServoController {
 	}
 
 	public int iGain(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_I_GAIN, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_I_GAIN, 1);
 	}
 
 	public boolean setPGain(int id, int gain) {
@@ -905,15 +963,7 @@ public class ServoController {
 	}
 
 	public int pGain(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_P_GAIN, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_P_GAIN, 1);
 	}
 
 	// ax commands
@@ -927,15 +977,7 @@ public class ServoController {
 	}
 
 	public int complianceMarginCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_COMPLIANCE_MARGIN_CW, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_COMPLIANCE_MARGIN_CW, 1);
 	}
 
 	public boolean setComplianceMarginCCW(int id, int value) {
@@ -948,15 +990,7 @@ public class ServoController {
 	}
 
 	public int complianceMarginCCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_COMPLIANCE_MARGIN_CCW, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_COMPLIANCE_MARGIN_CCW, 1);
 	}
 
 	public boolean setComplianceSlopeCW(int id, int value) {
@@ -969,15 +1003,7 @@ public class ServoController {
 	}
 
 	public int complianceSlopeCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_COMPLIANCE_SLOPE_CW, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_COMPLIANCE_SLOPE_CW, 1);
 	}
 
 	public boolean setComplianceSlopeCCW(int id, int value) {
@@ -990,15 +1016,7 @@ public class ServoController {
 	}
 
 	public int complianceSlopeCCW(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_COMPLIANCE_SLOPE_CCW, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_COMPLIANCE_SLOPE_CCW, 1);
 	}
 
 
@@ -1012,102 +1030,39 @@ public class ServoController {
 	}
 
 	public int goalPosition(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_GOAL_POS, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return (m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0);
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_GOAL_POS, 2);
 	}
 
 	public int presentPosition(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PRESENT_POS, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2) {
-					return -1;
-				}
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else {
-				return -1;
-			}
-		}
+		return readValue(id, DX_CMD_PRESENT_POS, 2);
 	}
 
 	public int presentSpeed(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PRESENT_SPEED, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_PRESENT_SPEED, 2);
 	}
 
 	public int presentLoad(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PRESENT_LOAD, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_PRESENT_LOAD, 2);
 	}
 
 	public double presentVolt(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PRESENT_VOLT, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return -1;
-				return m_returnPacket.param.get(0) / 10.0;
-			} else
-				return -1;
-		}
+		int value = readValue(id, DX_CMD_PRESENT_VOLT, 1);
+		if (value < 0)
+			return -1;
+		return value / 10.0;
 	}
 
 	public int presentTemp(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PRESENT_TEMP, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_PRESENT_TEMP, 2);
 	}
 
 	public boolean register(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_REGISTER, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return false;
-				return (m_returnPacket.param.get(0) > 0);
-			} else
-				return false;
-		}
+		return readValue(id, DX_CMD_REGISTER, 1) > 0;
 	}
 
 
 	public boolean moving(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_MOVING, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return false;
-				return (m_returnPacket.param.get(0) > 0);
-			} else
-				return false;
-		}
+		return readValue(id, DX_CMD_MOVING, 1) > 0;
 	}
 
 
@@ -1124,15 +1079,7 @@ public class ServoController {
 	}
 
 	public boolean torqueEnable(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_TORQUE_ENABLE, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return false;
-				return (m_returnPacket.param.get(0) > 0);
-			} else
-				return false;
-		}
+		return readValue(id, DX_CMD_TORQUE_ENABLE, 1) > 0;
 	}
 
 	public boolean setLock(int id, boolean enable) {
@@ -1148,15 +1095,7 @@ public class ServoController {
 	}
 
 	public boolean lock(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_LOCK, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return false;
-				return (m_returnPacket.param.get(0) > 0);
-			} else
-				return false;
-		}
+		return readValue(id, DX_CMD_LOCK, 1) > 0;
 	}
 
 	public boolean setLed(int id, boolean enable) {
@@ -1172,15 +1111,7 @@ public class ServoController {
 	}
 
 	public boolean led(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_LED_ENABLE, 1);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 1)
-					return false;
-				return m_returnPacket.param.get(0) > 0;
-			} else
-				return false;
-		}
+		return readValue(id, DX_CMD_LED_ENABLE, 1) > 0;
 	}
 
 
@@ -1194,15 +1125,7 @@ public class ServoController {
 	}
 
 	public int punch(int id) {
-		synchronized (m_lock) {
-			readData(id, DX_CMD_PUNCH, 2);
-			if (handleReturnStatus(id)) {
-				if (m_returnPacket.param.size() != 2)
-					return -1;
-				return ((m_returnPacket.param.get(1) << 8) + m_returnPacket.param.get(0));
-			} else
-				return -1;
-		}
+		return readValue(id, DX_CMD_PUNCH, 2);
 	}
 
 
@@ -1211,42 +1134,15 @@ public class ServoController {
 	}
 
 	protected synchronized boolean writeData2Bytes(int id, int addr, int data, boolean regWrite) {
-		m_curChecksum = 0;
-
-		write(DX_BEGIN);
-		write(DX_BEGIN);
-
-		// id
-		write(id);
-		m_curChecksum += id;
+		m_packet.begin(id, regWrite ? DX_INST_REG_WRITE : DX_INST_WRITE_DATA);
 
-		// length
-		write(2 + 3);
-		m_curChecksum += 2 + 3;  // 3 bytes param
-
-		// instruction
-		if (regWrite) {
-			write(DX_INST_REG_WRITE);
-			m_curChecksum += DX_INST_REG_WRITE;
-		} else {
-			write(DX_INST_WRITE_DATA);
-			m_curChecksum += DX_INST_WRITE_DATA;
-		}
+		// param - addr, low byte, high byte
+		m_packet.add(addr);
+		m_packet.addWord(data);
 
-		// param - addr
-		write(addr);
-		m_curChecksum += addr;
-		// param - low byte
-		write(data & 0x00FF);
-		m_curChecksum += data & 0x00FF;
-		// param - high byte
-		write((data & 0xFF00) >> 8);
-		m_curChecksum += (data & 0xFF00) >> 8;
-
-		// checksum
-		write(calcChecksum(m_curChecksum));
-
-		return true;
+		boolean ret = send(m_packet.finish());
+		expectWrite(id, addr, 2, data & 0xFFFF, regWrite);
+		return ret;
 	}
 
 	protected synchronized boolean writeDataByte(int id, int addr, int data) {
@@ -1254,71 +1150,133 @@ public class ServoController {
 	}
 
 	protected synchronized boolean writeDataByte(int id, int addr, int data, boolean regWrite) {
-		m_curChecksum = 0;
+		m_packet.begin(id, regWrite ? DX_INST_REG_WRITE : DX_INST_WRITE_DATA);
 
-		write(DX_BEGIN);
-		write(DX_BEGIN);
+		// param - addr, low byte
+		m_packet.add(addr);
+		m_packet.add(data & 0x00FF);
 
-		// id
-		write(id);
-		m_curChecksum += id;
+		boolean ret = send(m_packet.finish());
+		expectWrite(id, addr, 1, data & 0x00FF, regWrite);
+		return ret;
+	}
+
+	private void expectWrite(int id, int addr, int length, int value, boolean regWrite) {
+		m_writeID = id;
+		m_writeAddress = addr;
+		m_writeLength = length;
+		m_writeValue = value;
+		m_writeRegistered = regWrite;
+	}
 
-		// length
-		write(1 + 3);
-		m_curChecksum += 1 + 3;  // 3 bytes param
+	private void applyWrite(boolean confirmed) {
+		// keep the mirror in sync with the last write
+		if (m_writeID < 0)
+			return;
 
-		// instruction
-		if (regWrite) {
-			write(DX_INST_REG_WRITE);
-			m_curChecksum += DX_INST_REG_WRITE;
+		if (m_writeAddress == DX_CMD_ID || m_writeAddress == DX_CMD_BAUDRATE) {
+			m_mirror.invalidate(m_writeID);
+			if (m_writeAddress == DX_CMD_ID)
+				m_mirror.invalidate(m_writeValue);
+		} else if (confirmed && !m_writeRegistered) {
+			m_mirror.put(m_writeID, m_writeAddress, m_writeLength, m_writeValue, System.nanoTime());
 		} else {
-			write(DX_INST_WRITE_DATA);
-			m_curChecksum += DX_INST_WRITE_DATA;
+			// registered writes only become active with the next action
+			m_mirror.invalidate(m_writeID, m_writeAddress, m_writeLength);
 		}
 
-		// param - addr
-		write(addr);
-		m_curChecksum += addr;
-		// param - low byte
-		write(data & 0x00FF);
-		m_curChecksum += data & 0x00FF;
+		m_writeID = -1;
+	}
 
-		// checksum
-		write(calcChecksum(m_curChecksum));
+	protected int readValue(int id, int addr, int length) {
+		// serve a register from the mirror or read it from the servo
+		synchronized (m_lock) {
+			long now = System.nanoTime();
+			int value = m_mirror.get(id, addr, length, now);
+			if (value >= 0)
+				return value;
 
-		return true;
+			readData(id, addr, length);
+			if (handleReturnStatus(id)) {
+				if (m_returnPacket.getParamCount() != length)
+					return -1;
+				recordReadLatency(id, System.nanoTime() - now);
+				m_mirror.put(id, addr, m_returnPacket, now);
+				if (length == 2)
+					return m_returnPacket.getWord(0);
+				return m_returnPacket.getParam(0);
+			} else
+				return -1;
+		}
 	}
 
+	private void recordReadLatency(int id, long latency) {
+		LatencyHistogram histogram = getReadLatency(id);
+		if (histogram != null)
+			histogram.record(latency);
+	}
 
-	protected boolean readData(int id, int addr, int readLength) {
-		m_curChecksum = 0;
+	public LatencyHistogram getReadLatency(int id) {
+		// round-trip time of single reads, recorded under the bus lock
+		if (id < 0 || id >= DX_BROADCAST_ID)
+			return null;
+		synchronized (m_readLatency) {
+			if (m_readLatency[id] == null)
+				m_readLatency[id] = new LatencyHistogram();
+			return m_readLatency[id];
+		}
+	}
 
-		write(DX_BEGIN);
-		write(DX_BEGIN);
+	public long getBytesSent() {
+		return m_bytesSent;
+	}
 
-		// id
-		write(id);
-		m_curChecksum += id;
+	public long getBytesReceived() {
+		return m_bytesReceived;
+	}
 
-		// length
-		write(2 + 2);
-		m_curChecksum += 2 + 2; // 2 bytes param
+	public void invalidateCache(int id) {
+		synchronized (m_lock) {
+			m_mirror.invalidate(id);
+		}
+	}
 
-		// instruction
-		write(DX_INST_READ_DATA);
-		m_curChecksum += DX_INST_READ_DATA;
+	public void invalidateCache() {
+		synchronized (m_lock) {
+			m_mirror.invalidateAll();
+		}
+	}
 
-		// param - addr
-		write(addr);
-		m_curChecksum += addr;
-		// param - read length
-		write(readLength);
-		m_curChecksum += readLength;
+	public void setCacheMaxAge(long maxAge) {
+		// maximum age of cached present values in nanoseconds
+		synchronized (m_lock) {
+			m_mirror.setMaxAge(maxAge);
+		}
+	}
 
-		// checksum
-		write(calcChecksum(m_curChecksum));
-		return true;
+	public long getCacheMaxAge() {
+		return m_mirror.getMaxAge();
+	}
+
+	public void setCacheEnabled(boolean enable) {
+		synchronized (m_lock) {
+			m_mirror.setEnabled(enable);
+		}
+	}
+
+	public boolean cacheEnabled() {
+		return m_mirror.isEnabled();
+	}
+
+
+	protected boolean readData(int id, int addr, int readLength) {
+		m_packet.begin(id, DX_INST_READ_DATA);
+
+		// param - addr, read length
+		m_packet.add(addr);
+		m_packet.add(readLength);
 
+		return send(m_packet.finish());
 	}
 
 	public int lastError() {
@@ -1330,15 +1288,20 @@ public class ServoController {
 	}
 
 	protected boolean handleReturnStatus(int id) {
-		if (!readStatus(m_returnPacket))
+		if (!readStatus(m_returnPacket)) {
+			applyWrite(false);
 			return false;
+		}
 
 		m_error = m_returnPacket.error;
 		if (m_returnPacket.id != id || m_error != 0) {
 			m_error |= DX_ERROR_USR_ID;
+			applyWrite(false);
 			return false;
-		} else
+		} else {
+			applyWrite(true);
 			return true;
+		}
 	}
 
 	protected boolean handleReturnStatus() {
@@ -1352,84 +1315,20 @@ public class ServoController {
 	}
 
 	protected synchronized boolean readStatus(ReturnPacket returnPacket) {
-		if (!readStart(m_timeout)) {
-			m_error |= DX_ERROR_USR_NO_BEGIN;
-			return false;
-		}
-
-		if (!waitForData(m_serial, m_timeout, m_delay, 3)) {
-			m_error |= DX_ERROR_USR_DATA_TIMEOUT;
-			return false;
-		}
-
-		m_curChecksum = 0;
-
-		// read id
-		returnPacket.id = read();
-
-
-		// read length
-		returnPacket.length = read();
-
-		// read error
-		returnPacket.error = read();
-
-		// wait for the rest of the data
-		if (!waitForData(m_serial, m_timeout, m_delay, returnPacket.length - 1)) {
-			m_error |= DX_ERROR_USR_DATA_TIMEOUT;
-			return false;
-		}
-
-		// read param
-		returnPacket.param.clear();
-		for (int i = 0; i < returnPacket.length - 2; i++)
-			returnPacket.param.add(read());
-
-		return returnPacket.checksum() == read();
-	}
-
-	protected boolean readStart(int timeout) {
 		m_error = 0;
 
-		int origTimeout = timeout;
-		int failCount = 100;
-
-		while (failCount > 0) {
-			timeout = origTimeout;
-			if (!waitForData(m_serial, timeout, m_delay, 1))
+		switch (m_receiver.poll(returnPacket, m_timeout)) {
+			case StatusReceiver.RECEIVE_OK:
+				return true;
+			case StatusReceiver.RECEIVE_NO_BEGIN:
+				m_error |= DX_ERROR_USR_NO_BEGIN;
+				return false;
+			case StatusReceiver.RECEIVE_DATA_TIMEOUT:
+				m_error |= DX_ERROR_USR_DATA_TIMEOUT;
+				return false;
+			default:
+				// checksum mismatch
 				return false;
-
-			if (read() == DX_BEGIN)
-				break;
-			else
-				failCount--;
-		}
-
-		// second begin
-		timeout = origTimeout;
-		if (!waitForData(m_serial, timeout, m_delay, 1))
-			return false;
-
-		if (read() != DX_BEGIN)
-			return false;
-
-		// data
-		timeout = origTimeout;
-		return waitForData(m_serial, timeout, m_delay, 4);
-
-	}
-
-	public static boolean waitForData(SerialPort serial, int timeout, int delay, int dataCount) {
-		try {
-			while (serial.getInputStream().available() < dataCount && (timeout--) >= 0) {
-				if (!locSleep(delay))
-					return false;
-			}
-
-			return !(timeout < 0 && serial.getInputStream().available() < dataCount);
-
-		} catch (IOException e) {
-			return false;
 		}
 	}
 
@@ -1437,16 +1336,6 @@ public class ServoController {
 		return (0xFF & ~checksumVal);
 	}
 
-	protected static boolean locSleep(int delay) {
-		try {
-			Thread.sleep(delay);
-		} catch (InterruptedException exception) {
-			DebugHelper.log(exception);
-			return false;
-		}
-		return true;
-	}
-
 
 	public static String errorStr(int error) {
 		String retStr = "";
@@ -0,0 +1,60 @@
+package com.philipp_mandler.hexapod.server;
+
+public class ServoStatus {
+
+	// present position up to present temperature, 0x24 - 0x2B
+	public final static int ADDRESS = ServoController.DX_CMD_PRESENT_POS;
+	public final static int LENGTH = 8;
+
+	private int m_id = -1;
+	private boolean m_valid = false;
+	private int m_position;
+	private int m_speed;
+	private int m_load;
+	private int m_voltage;
+	private int m_temperature;
+
+	void set(int id, ReturnPacket packet) {
+		// decode the present values from a status packet
+		m_id = id;
+		m_position = packet.getWord(0);
+		m_speed = packet.getWord(2);
+		m_load = packet.getWord(4);
+		m_voltage = packet.getParam(6);
+		m_temperature = packet.getParam(7);
+		m_valid = true;
+	}
+
+	void invalidate(int id) {
+		m_id = id;
+		m_valid = false;
+	}
+
+	public int getID() {
+		return m_id;
+	}
+
+	public boolean isValid() {
+		return m_valid;
+	}
+
+	public int getPosition() {
+		return m_position;
+	}
+
+	public int getSpeed() {
+		return m_speed;
+	}
+
+	public int getLoad() {
+		return m_load;
+	}
+
+	public double getVoltage() {
+		return m_voltage / 10.0;
+	}
+
+	public int getTemperature() {
+		return m_temperature;
+	}
+}
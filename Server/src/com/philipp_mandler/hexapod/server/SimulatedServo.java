@@ -0,0 +1,166 @@
+package com.philipp_mandler.hexapod.server;
+
+public class SimulatedServo {
+
+	// MX-28 control table up to the goal acceleration
+	public final static int TABLE_SIZE = 0x4A;
+
+	// 0x3FF is 116.62 rpm, about 55 rpm is reached at 12 V without speed control
+	private final static double RPM_PER_UNIT = 0.114;
+	private final static double MAX_RPM = 55.0;
+
+	private final int[] m_table = new int[TABLE_SIZE];
+
+	// pending reg write
+	private final int[] m_regData = new int[TABLE_SIZE];
+	private int m_regAddress = -1;
+	private int m_regLength = 0;
+
+	private double m_position;
+	private long m_lastUpdate = -1;
+
+	public SimulatedServo(int id) {
+		factoryReset();
+		m_table[ServoController.DX_CMD_ID] = id;
+	}
+
+	public synchronized void factoryReset() {
+		// default values of a new MX-28
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			m_table[i] = 0;
+		}
+		setWord(ServoController.DX_CMD_MODELNR, ServoController.DX_TYPE_MX_28);
+		m_table[ServoController.DX_CMD_FIRMWARE] = 30;
+		m_table[ServoController.DX_CMD_ID] = 1;
+		m_table[ServoController.DX_CMD_BAUDRATE] = 34;
+		m_table[ServoController.DX_CMD_DELAYTIME] = 250;
+		setWord(ServoController.DX_CMD_CW_ANGLE_LIMIT, 0);
+		setWord(ServoController.DX_CMD_CCW_ANGLE_LIMIT, 4095);
+		m_table[ServoController.DX_CMD_HIGH_LIMIT_TEMP] = 80;
+		m_table[ServoController.DX_CMD_LOW_LIMIT_VOLT] = 60;
+		m_table[ServoController.DX_CMD_HIGH_LIMIT_VOLT] = 160;
+		setWord(ServoController.DX_CMD_MAX_TORQUE, 1023);
+		m_table[ServoController.DX_CMD_STATUSRETURNLEVEL] = 2;
+		m_table[ServoController.DX_CMD_ALARM_LED] = 36;
+		m_table[ServoController.DX_CMD_ALARM_SHUTDOWN] = 36;
+		m_table[ServoController.DX_CMD_P_GAIN] = 32;
+		setWord(ServoController.DX_CMD_GOAL_POS, 2048);
+		setWord(ServoController.DX_CMD_LIMIT_TORQUE, 1023);
+		setWord(ServoController.DX_CMD_PRESENT_POS, 2048);
+		m_table[ServoController.DX_CMD_PRESENT_VOLT] = 120;
+		m_table[ServoController.DX_CMD_PRESENT_TEMP] = 35;
+		setWord(ServoController.DX_CMD_PUNCH, 32);
+		m_position = 2048;
+		m_regAddress = -1;
+	}
+
+	public synchronized int getID() {
+		return m_table[ServoController.DX_CMD_ID];
+	}
+
+	public synchronized int getStatusReturnLevel() {
+		return m_table[ServoController.DX_CMD_STATUSRETURNLEVEL];
+	}
+
+	public synchronized long getReturnDelay() {
+		// 2 us per unit, in nanoseconds
+		return m_table[ServoController.DX_CMD_DELAYTIME] * 2000L;
+	}
+
+	public synchronized int read(int address) {
+		if (address < 0 || address >= TABLE_SIZE)
+			return 0;
+		return m_table[address];
+	}
+
+	public synchronized int readWord(int address) {
+		return read(address) + (read(address + 1) << 8);
+	}
+
+	public synchronized void set(int address, int value) {
+		// change a value directly, e.g. to fake a load or a low voltage
+		if (address >= 0 && address < TABLE_SIZE)
+			m_table[address] = value & 0xFF;
+		if (address == ServoController.DX_CMD_PRESENT_POS || address == ServoController.DX_CMD_PRESENT_POS + 1)
+			m_position = readWord(ServoController.DX_CMD_PRESENT_POS);
+	}
+
+	public synchronized void setWord(int address, int value) {
+		set(address, value & 0xFF);
+		set(address + 1, (value >> 8) & 0xFF);
+	}
+
+	synchronized void update(long now) {
+		// move the present position towards the goal
+		if (m_lastUpdate < 0)
+			m_lastUpdate = now;
+		long elapsed = now - m_lastUpdate;
+		m_lastUpdate = now;
+
+		int goal = readWord(ServoController.DX_CMD_GOAL_POS);
+		int speed = readWord(ServoController.DX_CMD_MOV_SPEED) & 0x3FF;
+		double rpm = speed == 0 ? MAX_RPM : Math.min(MAX_RPM, speed * RPM_PER_UNIT);
+
+		if (m_table[ServoController.DX_CMD_TORQUE_ENABLE] == 0 || m_position == goal) {
+			m_table[ServoController.DX_CMD_MOVING] = 0;
+			setWord(ServoController.DX_CMD_PRESENT_SPEED, 0);
+			return;
+		}
+
+		double step = rpm * 4096.0 / 60.0 * elapsed / 1000000000.0;
+		double distance = goal - m_position;
+		if (Math.abs(distance) <= step)
+			m_position = goal;
+		else
+			m_position += Math.signum(distance) * step;
+
+		int presentSpeed = (int) Math.round(rpm / RPM_PER_UNIT);
+		if (distance < 0)
+			presentSpeed |= 0x400;
+
+		m_table[ServoController.DX_CMD_PRESENT_POS] = (int) Math.round(m_position) & 0xFF;
+		m_table[ServoController.DX_CMD_PRESENT_POS + 1] = ((int) Math.round(m_position) >> 8) & 0xFF;
+		setWord(ServoController.DX_CMD_PRESENT_SPEED, presentSpeed);
+		m_table[ServoController.DX_CMD_MOVING] = m_position == goal ? 0 : 1;
+	}
+
+	synchronized int write(int address, byte[] data, int offset, int length) {
+		// returns the error flags of the status packet
+		if (!isWritable(address, length))
+			return ServoController.DX_ERROR_RANGE;
+		for (int i = 0; i < length; i++) {
+			m_table[address + i] = data[offset + i] & 0xFF;
+		}
+		return ServoController.DX_ERROR_NO;
+	}
+
+	synchronized int regWrite(int address, byte[] data, int offset, int length) {
+		if (!isWritable(address, length))
+			return ServoController.DX_ERROR_RANGE;
+		for (int i = 0; i < length; i++) {
+			m_regData[i] = data[offset + i] & 0xFF;
+		}
+		m_regAddress = address;
+		m_regLength = length;
+		m_table[ServoController.DX_CMD_REGISTER] = 1;
+		return ServoController.DX_ERROR_NO;
+	}
+
+	synchronized int action() {
+		if (m_regAddress < 0)
+			return ServoController.DX_ERROR_INST;
+		for (int i = 0; i < m_regLength; i++) {
+			m_table[m_regAddress + i] = m_regData[i];
+		}
+		m_regAddress = -1;
+		m_table[ServoController.DX_CMD_REGISTER] = 0;
+		return ServoController.DX_ERROR_NO;
+	}
+
+	private boolean isWritable(int address, int length) {
+		// model number, firmware and present values are read only
+		if (length <= 0 || address < ServoController.DX_CMD_ID || address + length > TABLE_SIZE)
+			return false;
+		return address + length <= ServoController.DX_CMD_PRESENT_POS || address >= ServoController.DX_CMD_LOCK;
+	}
+}
@@ -0,0 +1,402 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SimulatedServoBus implements ServoBus {
+
+	// in-process bus with simulated MX-28 servos, e.g. "sim:20" for the ids 1 - 20
+	public final static String PREFIX = "sim:";
+
+	private final static int STATE_BEGIN = 0;
+	private final static int STATE_BEGIN_2 = 1;
+	private final static int STATE_ID = 2;
+	private final static int STATE_LENGTH = 3;
+	private final static int STATE_INSTRUCTION = 4;
+	private final static int STATE_PARAM = 5;
+	private final static int STATE_CHECKSUM = 6;
+
+	// transmit buffer of the host, every write is one chunk
+	private final static int CHUNKS = 16;
+
+	private final List<SimulatedServo> m_servos = new CopyOnWriteArrayList<>();
+	private volatile ServoBusListener m_listener;
+	private final int m_baudRate;
+	private final long m_byteTime;
+	private volatile long m_latency = 0;
+	private volatile double m_checksumErrorRate = 0.0;
+	private final Random m_random = new Random(0);
+
+	private final Lock m_lock = new ReentrantLock();
+	private final Condition m_notEmpty = m_lock.newCondition();
+	private final Condition m_notFull = m_lock.newCondition();
+	private final byte[][] m_chunks = new byte[CHUNKS][InstructionPacket.MAX_SIZE];
+	private final int[] m_chunkLengths = new int[CHUNKS];
+	private final long[] m_chunkArrivals = new long[CHUNKS];
+	private int m_head = 0;
+	private int m_count = 0;
+	private long m_wireFree = 0;
+	private volatile boolean m_running = true;
+
+	// owned by the bus thread
+	private final byte[] m_current = new byte[InstructionPacket.MAX_SIZE];
+	private final byte[] m_params = new byte[255];
+	private final InstructionPacket m_reply = new InstructionPacket();
+	private int m_state = STATE_BEGIN;
+	private int m_id;
+	private int m_length;
+	private int m_instruction;
+	private int m_paramCount;
+	private int m_checksum;
+
+	private final Thread m_thread;
+
+	public SimulatedServoBus(int baudRate) {
+		m_baudRate = baudRate;
+		// start bit, 8 data bits and stop bit
+		m_byteTime = 10000000000L / baudRate;
+
+		m_thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				busLoop();
+			}
+		}, "Simulated servo bus");
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	public static SimulatedServoBus fromString(String name, int baudRate) {
+		// "sim:" followed by the number of servos, starting at id 1
+		int count = 20;
+		String arg = name.substring(PREFIX.length());
+		if (!arg.isEmpty()) {
+			try {
+				count = Integer.parseInt(arg);
+			} catch (NumberFormatException e) {
+				DebugHelper.log("Simulated bus: invalid servo count " + arg + ", using " + count + ".", Log.WARNING);
+			}
+		}
+		SimulatedServoBus bus = new SimulatedServoBus(baudRate);
+		for (int id = 1; id <= count; id++) {
+			bus.addServo(id);
+		}
+		return bus;
+	}
+
+	public SimulatedServo addServo(int id) {
+		SimulatedServo servo = new SimulatedServo(id);
+		m_servos.add(servo);
+		return servo;
+	}
+
+	public SimulatedServo getServo(int id) {
+		for (int i = 0; i < m_servos.size(); i++) {
+			SimulatedServo servo = m_servos.get(i);
+			if (servo.getID() == id)
+				return servo;
+		}
+		return null;
+	}
+
+	public void removeServo(SimulatedServo servo) {
+		m_servos.remove(servo);
+	}
+
+	public void setLatency(long latency) {
+		// additional delay in nanoseconds until a reply reaches the host, e.g. the usb adapter
+		m_latency = latency;
+	}
+
+	public long getLatency() {
+		return m_latency;
+	}
+
+	public void setChecksumErrorRate(double rate) {
+		// probability of a corrupted status packet
+		m_checksumErrorRate = rate;
+	}
+
+	public double getChecksumErrorRate() {
+		return m_checksumErrorRate;
+	}
+
+	public void setSeed(long seed) {
+		m_random.setSeed(seed);
+	}
+
+	@Override
+	public void setListener(ServoBusListener listener) {
+		m_listener = listener;
+	}
+
+	@Override
+	public boolean write(byte[] data, int offset, int length) {
+		if (!m_running)
+			return false;
+		m_lock.lock();
+		try {
+			while (length > 0) {
+				while (m_count == CHUNKS) {
+					m_notFull.await();
+				}
+
+				// the bytes arrive after they went over the wire
+				int count = Math.min(length, InstructionPacket.MAX_SIZE);
+				int index = (m_head + m_count) % CHUNKS;
+				System.arraycopy(data, offset, m_chunks[index], 0, count);
+				m_chunkLengths[index] = count;
+				m_wireFree = Math.max(System.nanoTime(), m_wireFree) + count * m_byteTime;
+				m_chunkArrivals[index] = m_wireFree;
+				m_count++;
+				m_notEmpty.signal();
+
+				offset += count;
+				length -= count;
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			m_lock.unlock();
+		}
+	}
+
+	@Override
+	public int getBaudRate() {
+		return m_baudRate;
+	}
+
+	@Override
+	public void close() {
+		m_running = false;
+		m_thread.interrupt();
+	}
+
+	private void busLoop() {
+		while (m_running) {
+			int length;
+			long arrival;
+
+			m_lock.lock();
+			try {
+				while (m_count == 0) {
+					m_notEmpty.await();
+				}
+				length = m_chunkLengths[m_head];
+				arrival = m_chunkArrivals[m_head];
+				System.arraycopy(m_chunks[m_head], 0, m_current, 0, length);
+				m_head = (m_head + 1) % CHUNKS;
+				m_count--;
+				m_notFull.signal();
+			} catch (InterruptedException e) {
+				break;
+			} finally {
+				m_lock.unlock();
+			}
+
+			waitUntil(arrival);
+
+			for (int i = 0; i < length; i++) {
+				parse(m_current[i] & 0xFF, arrival);
+			}
+		}
+	}
+
+	private void parse(int value, long arrival) {
+		switch (m_state) {
+			case STATE_BEGIN:
+				if (value == ServoController.DX_BEGIN)
+					m_state = STATE_BEGIN_2;
+				break;
+			case STATE_BEGIN_2:
+				m_state = value == ServoController.DX_BEGIN ? STATE_ID : STATE_BEGIN;
+				break;
+			case STATE_ID:
+				if (value == ServoController.DX_BEGIN)
+					break;
+				m_id = value;
+				m_checksum = value;
+				m_state = STATE_LENGTH;
+				break;
+			case STATE_LENGTH:
+				if (value < 2) {
+					m_state = STATE_BEGIN;
+					break;
+				}
+				m_length = value;
+				m_checksum += value;
+				m_state = STATE_INSTRUCTION;
+				break;
+			case STATE_INSTRUCTION:
+				m_instruction = value;
+				m_checksum += value;
+				m_paramCount = 0;
+				m_state = m_length > 2 ? STATE_PARAM : STATE_CHECKSUM;
+				break;
+			case STATE_PARAM:
+				m_params[m_paramCount++] = (byte) value;
+				m_checksum += value;
+				if (m_paramCount == m_length - 2)
+					m_state = STATE_CHECKSUM;
+				break;
+			case STATE_CHECKSUM:
+				m_state = STATE_BEGIN;
+				if (ServoController.calcChecksum(m_checksum) == value)
+					execute(arrival);
+				else
+					checksumError(arrival);
+				break;
+		}
+	}
+
+	private void checksumError(long arrival) {
+		SimulatedServo servo = getServo(m_id);
+		if (servo != null && servo.getStatusReturnLevel() > 0)
+			reply(servo, m_reply.begin(m_id, ServoController.DX_ERROR_CHECKSUM).finish(), arrival);
+	}
+
+	private void execute(long arrival) {
+		if (m_instruction == ServoController.DX_INST_SYNC_WRITE) {
+			syncWrite(arrival);
+			return;
+		}
+		if (m_instruction == ServoController.DX_INST_BULK_READ) {
+			bulkRead(arrival);
+			return;
+		}
+
+		// all other instructions are handled by each addressed servo
+		boolean broadcast = m_id == ServoController.DX_BROADCAST_ID;
+		for (int i = 0; i < m_servos.size(); i++) {
+			SimulatedServo servo = m_servos.get(i);
+			if (broadcast || servo.getID() == m_id) {
+				servo.update(arrival);
+				execute(servo, broadcast, arrival);
+			}
+		}
+	}
+
+	private void execute(SimulatedServo servo, boolean broadcast, long arrival) {
+		int id = servo.getID();
+		int level = servo.getStatusReturnLevel();
+		int error;
+
+		switch (m_instruction) {
+			case ServoController.DX_INST_PING:
+				if (!broadcast)
+					reply(servo, m_reply.begin(id, ServoController.DX_ERROR_NO).finish(), arrival);
+				return;
+			case ServoController.DX_INST_READ_DATA:
+				if (broadcast || level < 1)
+					return;
+				if (m_paramCount != 2) {
+					reply(servo, m_reply.begin(id, ServoController.DX_ERROR_INST).finish(), arrival);
+					return;
+				}
+				readReply(servo, m_params[0] & 0xFF, m_params[1] & 0xFF);
+				reply(servo, m_reply, arrival);
+				return;
+			case ServoController.DX_INST_WRITE_DATA:
+				error = m_paramCount < 2 ? ServoController.DX_ERROR_INST : servo.write(m_params[0] & 0xFF, m_params, 1, m_paramCount - 1);
+				break;
+			case ServoController.DX_INST_REG_WRITE:
+				error = m_paramCount < 2 ? ServoController.DX_ERROR_INST : servo.regWrite(m_params[0] & 0xFF, m_params, 1, m_paramCount - 1);
+				break;
+			case ServoController.DX_INST_ACTION:
+				error = servo.action();
+				break;
+			case ServoController.DX_INST_RESET:
+				servo.factoryReset();
+				error = ServoController.DX_ERROR_NO;
+				break;
+			default:
+				error = ServoController.DX_ERROR_INST;
+				break;
+		}
+
+		if (!broadcast && level > 1)
+			reply(servo, m_reply.begin(id, error).finish(), arrival);
+	}
+
+	private void syncWrite(long arrival) {
+		// address, data length, then id and data for every servo
+		if (m_id != ServoController.DX_BROADCAST_ID || m_paramCount < 2)
+			return;
+		int address = m_params[0] & 0xFF;
+		int length = m_params[1] & 0xFF;
+		for (int offset = 2; offset + 1 + length <= m_paramCount; offset += length + 1) {
+			SimulatedServo servo = getServo(m_params[offset] & 0xFF);
+			if (servo != null) {
+				servo.update(arrival);
+				servo.write(address, m_params, offset + 1, length);
+			}
+		}
+	}
+
+	private void bulkRead(long arrival) {
+		// 0x00, then length, id and address for every servo
+		// every servo waits for the reply of its predecessor, a missing one breaks the chain
+		if (m_id != ServoController.DX_BROADCAST_ID)
+			return;
+		for (int offset = 1; offset + 2 < m_paramCount; offset += 3) {
+			SimulatedServo servo = getServo(m_params[offset + 1] & 0xFF);
+			if (servo == null)
+				return;
+			servo.update(arrival);
+			readReply(servo, m_params[offset + 2] & 0xFF, m_params[offset] & 0xFF);
+			arrival = reply(servo, m_reply, arrival);
+		}
+	}
+
+	private void readReply(SimulatedServo servo, int address, int length) {
+		m_reply.begin(servo.getID(), ServoController.DX_ERROR_NO);
+		if (address + length > SimulatedServo.TABLE_SIZE) {
+			m_reply.begin(servo.getID(), ServoController.DX_ERROR_RANGE);
+			length = 0;
+		}
+		for (int i = 0; i < length; i++) {
+			m_reply.add(servo.read(address + i));
+		}
+		m_reply.finish();
+	}
+
+	private long reply(SimulatedServo servo, InstructionPacket packet, long arrival) {
+		// send a status packet after the return delay, returns the time the wire is free again
+		int size = packet.getSize();
+		long end;
+		m_lock.lock();
+		try {
+			long start = Math.max(arrival + servo.getReturnDelay(), m_wireFree);
+			end = start + size * m_byteTime;
+			m_wireFree = end;
+		} finally {
+			m_lock.unlock();
+		}
+
+		waitUntil(end + m_latency);
+
+		byte[] buffer = packet.getBuffer();
+		if (m_checksumErrorRate > 0 && m_random.nextDouble() < m_checksumErrorRate)
+			buffer[size - 1] = (byte) ~buffer[size - 1];
+
+		ServoBusListener listener = m_listener;
+		if (listener != null)
+			listener.onDataReceived(buffer, 0, size);
+
+		return end;
+	}
+
+	private void waitUntil(long time) {
+		long remaining;
+		while ((remaining = time - System.nanoTime()) > 0 && m_running) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
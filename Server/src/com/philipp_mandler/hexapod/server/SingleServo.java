@@ -8,8 +8,11 @@ public class SingleServo {
 	private double m_offset;
 	private double m_deadZone;
 	private boolean m_connected;
-	private int m_goalPosition;
+	// set by the motion thread, read by the bus scheduler
+	private volatile int m_goalPosition;
 	private boolean m_sync = false;
+	private volatile boolean m_goalSet = false;
+	private volatile int m_sentPosition = -1;
 	private double m_goalPositionRad;
 
 	public SingleServo(ServoController controller, int id, boolean sync) {
@@ -18,7 +21,7 @@ public class SingleServo {
 		m_servoResolution = 4096;
 		m_offset = 0;
 		m_sync = sync;
-		m_connected = ping();
+		m_connected = discovered();
 	}
 
 	public SingleServo(ServoController controller, int id, boolean sync, int servoResolution) {
@@ -27,7 +30,7 @@ public class SingleServo {
 		m_servoResolution = servoResolution;
 		m_offset = 0;
 		m_sync = sync;
-		m_connected = ping();
+		m_connected = discovered();
 	}
 
 	public SingleServo(ServoController controller, int id, boolean sync, int servoResolution, double offset) {
@@ -36,7 +39,7 @@ public class SingleServo {
 		m_servoResolution = servoResolution;
 		m_offset = offset;
 		m_sync = sync;
-		m_connected = ping();
+		m_connected = discovered();
 	}
 
 	public SingleServo(ServoController controller, int id, boolean sync, int servoResolution, double offset, double deadZone) {
@@ -46,21 +49,46 @@ public class SingleServo {
 		m_offset = offset;
 		m_deadZone = deadZone;
 		m_sync = sync;
-		m_connected = ping();
+		m_connected = discovered();
 	}
 
 	public void setGoalPosition(double rad) {
 		m_goalPositionRad = rad;
-		m_goalPosition = (int)Math.round((((rad / (Math.PI * 2)) * (2 * Math.PI) - (m_deadZone / 2 * Math.PI)) + m_offset) / (2.0 * Math.PI) * (m_servoResolution - 1.0)) % m_servoResolution;
+		int goal = (int)Math.round((((rad / (Math.PI * 2)) * (2 * Math.PI) - (m_deadZone / 2 * Math.PI)) + m_offset) / (2.0 * Math.PI) * (m_servoResolution - 1.0)) % m_servoResolution;
+		m_goalPosition = goal;
+		m_goalSet = true;
 
-		if(!m_sync)
-			m_controller.setGoalPosition(m_servoID, m_goalPosition);
+		if(!m_sync) {
+			m_controller.setGoalPosition(m_servoID, goal);
+			m_sentPosition = goal;
+		}
 	}
 
 	public int getPosValue()  {
 		return m_goalPosition;
 	}
 
+	public boolean hasGoalPosition() {
+		return m_goalSet;
+	}
+
+	public boolean isGoalDirty(int deadband) {
+		// true if the goal moved more than deadband ticks away from the value on the servo
+		if(!m_goalSet)
+			return false;
+		return m_sentPosition < 0 || Math.abs(m_goalPosition - m_sentPosition) > deadband;
+	}
+
+	public void markGoalSent(int sent) {
+		// the value that was encoded, the goal may have moved on since
+		m_sentPosition = sent;
+	}
+
+	public void invalidateGoal() {
+		// send the goal again with the next update
+		m_sentPosition = -1;
+	}
+
 	public void setOffset(double offset) {
 		m_offset = offset;
 	}
@@ -108,16 +136,27 @@ public class SingleServo {
 
 	public int getCurrentLoad() {
 		if(m_connected) {
-			int load = m_controller.presentLoad(m_servoID);
-
-			if(load > 1023)
-				return 1024 - load;
-
-			return load;
+			return convertLoad(m_controller.presentLoad(m_servoID));
 		}
 		return -1;
 	}
 
+	public static int convertLoad(int load) {
+		// values above 1023 are clockwise loads
+		if(load > 1023)
+			return 1024 - load;
+
+		return load;
+	}
+
+	public boolean getCurrentStatus(ServoStatus status) {
+		// read all present values in one round-trip
+		if(m_connected)
+			return m_controller.presentStatus(m_servoID, status);
+		status.invalidate(m_servoID);
+		return false;
+	}
+
 	public double getCurrentVoltage() {
 		if(m_connected)
 			return m_controller.presentVolt(m_servoID);
@@ -157,8 +196,11 @@ public class SingleServo {
 	}
 
 	public boolean setTorqueEnabled(boolean enable) {
-		if(m_connected)
+		if(m_connected) {
+			if(enable)
+				invalidateGoal();
 			return m_controller.setTorqueEnable(m_servoID, enable);
+		}
 		return false;
 	}
 
@@ -247,6 +289,11 @@ public class SingleServo {
 		return false;
 	}
 
+	private boolean discovered() {
+		// use the cached discovery result instead of pinging again
+		return m_controller.initialized() && m_controller.isPresent(m_servoID);
+	}
+
 	public boolean ping() {
 		if(m_controller.initialized())
 			return m_connected = m_controller.ping(m_servoID);
@@ -0,0 +1,142 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class StartupSequence {
+
+	private final Map<String, Phase> m_phases = new LinkedHashMap<>();
+	private long m_start;
+	private long m_end;
+
+	private static class Phase {
+		private final String m_name;
+		private final Callable<?> m_task;
+		private final Phase[] m_dependencies;
+		private final CountDownLatch m_done = new CountDownLatch(1);
+		private volatile boolean m_failed = false;
+		private volatile Throwable m_error;
+		private volatile long m_start;
+		private volatile long m_end;
+
+		Phase(String name, Callable<?> task, Phase[] dependencies) {
+			m_name = name;
+			m_task = task;
+			m_dependencies = dependencies;
+		}
+	}
+
+	public void add(String name, Callable<?> task, String... dependencies) {
+		// dependencies have to be added first, so there can't be any cycles
+		Phase[] phases = new Phase[dependencies.length];
+		for(int i = 0; i < dependencies.length; i++) {
+			phases[i] = m_phases.get(dependencies[i]);
+			if(phases[i] == null)
+				throw new IllegalArgumentException("Startup phase " + name + " depends on unknown phase " + dependencies[i] + ".");
+		}
+		if(m_phases.containsKey(name))
+			throw new IllegalArgumentException("Startup phase " + name + " already exists.");
+		m_phases.put(name, new Phase(name, task, phases));
+	}
+
+	public boolean run() {
+		// every phase starts as soon as its dependencies are done, returns false if one failed
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, m_phases.size()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Startup");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		m_start = System.nanoTime();
+		for(final Phase phase : m_phases.values()) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					runPhase(phase);
+				}
+			});
+		}
+
+		boolean success = true;
+		for(Phase phase : m_phases.values()) {
+			try {
+				phase.m_done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				success = false;
+				break;
+			}
+			if(phase.m_failed)
+				success = false;
+		}
+		m_end = System.nanoTime();
+
+		executor.shutdown();
+		return success;
+	}
+
+	private void runPhase(Phase phase) {
+		try {
+			for(Phase dependency : phase.m_dependencies) {
+				dependency.m_done.await();
+				if(dependency.m_failed) {
+					phase.m_failed = true;
+					return;
+				}
+			}
+
+			phase.m_start = System.nanoTime();
+			try {
+				phase.m_task.call();
+			} catch (Throwable e) {
+				phase.m_error = e;
+				phase.m_failed = true;
+			}
+			phase.m_end = System.nanoTime();
+		} catch (InterruptedException e) {
+			phase.m_failed = true;
+		} finally {
+			phase.m_done.countDown();
+		}
+	}
+
+	public boolean hasFailed(String name) {
+		Phase phase = m_phases.get(name);
+		return phase != null && phase.m_failed;
+	}
+
+	public Throwable getError(String name) {
+		Phase phase = m_phases.get(name);
+		return phase != null ? phase.m_error : null;
+	}
+
+	public long getDuration() {
+		return m_end - m_start;
+	}
+
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Ready after %.1f ms", getDuration() / 1000000.0));
+		for(Phase phase : m_phases.values()) {
+			report.append("\n  ").append(phase.m_name).append(": ");
+			if(phase.m_start == 0) {
+				report.append("skipped");
+			}
+			else {
+				// offset of the phase from the start and its own duration
+				report.append(String.format("+%.1f ms, took %.1f ms", (phase.m_start - m_start) / 1000000.0, (phase.m_end - phase.m_start) / 1000000.0));
+				if(phase.m_error != null)
+					report.append(", failed: ").append(phase.m_error);
+			}
+		}
+		return report.toString();
+	}
+}
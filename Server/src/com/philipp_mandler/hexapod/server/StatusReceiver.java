@@ -0,0 +1,165 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+class StatusReceiver {
+
+	public final static int RECEIVE_OK = 0;
+	public final static int RECEIVE_NO_BEGIN = 1;
+	public final static int RECEIVE_DATA_TIMEOUT = 2;
+	public final static int RECEIVE_CHECKSUM = 3;
+
+	private final static int STATE_BEGIN = 0;
+	private final static int STATE_BEGIN_2 = 1;
+	private final static int STATE_ID = 2;
+	private final static int STATE_LENGTH = 3;
+	private final static int STATE_ERROR = 4;
+	private final static int STATE_PARAM = 5;
+	private final static int STATE_CHECKSUM = 6;
+
+	private final Lock m_lock = new ReentrantLock();
+	private final Condition m_packetReady = m_lock.newCondition();
+
+	// ring of parsed status packets
+	private final ReturnPacket[] m_packets;
+	private final boolean[] m_valid;
+	private int m_head = 0;
+	private int m_count = 0;
+	private long m_dropped = 0;
+
+	// parser state, a packet that arrives while the ring is full is parsed into the scratch packet and dropped
+	private int m_state = STATE_BEGIN;
+	private int m_paramsLeft = 0;
+	private final ReturnPacket m_scratch = new ReturnPacket();
+	private ReturnPacket m_target = m_scratch;
+
+	public StatusReceiver(int capacity) {
+		m_packets = new ReturnPacket[capacity];
+		m_valid = new boolean[capacity];
+		for(int i = 0; i < capacity; i++) {
+			m_packets[i] = new ReturnPacket();
+		}
+	}
+
+	public void clear() {
+		// drop everything that belongs to an earlier instruction
+		m_lock.lock();
+		try {
+			m_head = 0;
+			m_count = 0;
+			m_state = STATE_BEGIN;
+		} finally {
+			m_lock.unlock();
+		}
+	}
+
+	public void receive(byte[] data, int offset, int length) {
+		// called by the receiving thread for every chunk of incoming bytes
+		m_lock.lock();
+		try {
+			boolean completed = false;
+			for(int i = offset; i < offset + length; i++) {
+				completed |= parse(data[i] & 0xFF);
+			}
+			if(completed)
+				m_packetReady.signalAll();
+		} finally {
+			m_lock.unlock();
+		}
+	}
+
+	public int poll(ReturnPacket returnPacket, long timeout) {
+		// wait for the next complete packet until the deadline (in nanoseconds) has passed
+		m_lock.lock();
+		try {
+			long nanos = timeout;
+			while(m_count == 0) {
+				if(nanos <= 0)
+					return m_state == STATE_BEGIN ? RECEIVE_NO_BEGIN : RECEIVE_DATA_TIMEOUT;
+				nanos = m_packetReady.awaitNanos(nanos);
+			}
+
+			returnPacket.copyFrom(m_packets[m_head]);
+			boolean valid = m_valid[m_head];
+			m_head = (m_head + 1) % m_packets.length;
+			m_count--;
+
+			return valid ? RECEIVE_OK : RECEIVE_CHECKSUM;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return RECEIVE_DATA_TIMEOUT;
+		} finally {
+			m_lock.unlock();
+		}
+	}
+
+	public long getDropped() {
+		m_lock.lock();
+		try {
+			return m_dropped;
+		} finally {
+			m_lock.unlock();
+		}
+	}
+
+	private boolean parse(int value) {
+		// returns true when the byte completed a packet
+		ReturnPacket packet = m_target;
+
+		switch(m_state) {
+			case STATE_BEGIN:
+				if(value == ServoController.DX_BEGIN)
+					m_state = STATE_BEGIN_2;
+				break;
+			case STATE_BEGIN_2:
+				m_state = value == ServoController.DX_BEGIN ? STATE_ID : STATE_BEGIN;
+				break;
+			case STATE_ID:
+				// skip additional begin bytes
+				if(value == ServoController.DX_BEGIN)
+					break;
+				// the slot is chosen once per packet, undelivered packets are never overwritten
+				packet = m_count == m_packets.length ? m_scratch : m_packets[(m_head + m_count) % m_packets.length];
+				m_target = packet;
+				packet.id = value;
+				m_state = STATE_LENGTH;
+				break;
+			case STATE_LENGTH:
+				if(value < 2) {
+					m_state = STATE_BEGIN;
+					break;
+				}
+				packet.length = value;
+				m_state = STATE_ERROR;
+				break;
+			case STATE_ERROR:
+				packet.error = value;
+				packet.clear();
+				m_paramsLeft = packet.length - 2;
+				m_state = m_paramsLeft > 0 ? STATE_PARAM : STATE_CHECKSUM;
+				break;
+			case STATE_PARAM:
+				packet.add(value);
+				if(--m_paramsLeft == 0)
+					m_state = STATE_CHECKSUM;
+				break;
+			case STATE_CHECKSUM:
+				m_state = STATE_BEGIN;
+				if(packet == m_scratch) {
+					m_dropped++;
+					return false;
+				}
+				commit(packet.checksum() == value);
+				return true;
+		}
+		return false;
+	}
+
+	private void commit(boolean valid) {
+		// polling only moves the head, so the packet is still at the end of the ring
+		m_valid[(m_head + m_count) % m_packets.length] = valid;
+		m_count++;
+	}
+}
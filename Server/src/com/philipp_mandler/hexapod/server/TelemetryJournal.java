@@ -0,0 +1,285 @@
+package com.philipp_mandler.hexapod.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+public class TelemetryJournal {
+
+	// segment header: magic, version, record size, capacity, segment, session, wall clock and nano time of creation
+	public final static int HEADER_SIZE = 64;
+	public final static int MAGIC = 0x484A524E;
+	public final static int VERSION = 1;
+
+	final static int HEADER_MAGIC = 0;
+	final static int HEADER_VERSION = 4;
+	final static int HEADER_RECORD_SIZE = 8;
+	final static int HEADER_CAPACITY = 12;
+	final static int HEADER_SEGMENT = 16;
+	final static int HEADER_SESSION = 24;
+	final static int HEADER_START_MILLIS = 32;
+	final static int HEADER_START_NANOS = 40;
+
+	private final static String PREFIX = "journal-";
+	private final static String SUFFIX = ".hxj";
+
+	private final File m_directory;
+	private final int m_capacity;
+	private final int m_maxSegments;
+
+	private MappedByteBuffer m_buffer;
+	private int m_position;
+	private long m_segment;
+	private final long m_session;
+	private long m_sequence = 0;
+	private long m_dropped = 0;
+
+	// the writer thread maps the next segment ahead and forces full segments, append only swaps them
+	private MappedByteBuffer m_next;
+	private final ArrayDeque<MappedByteBuffer> m_retired = new ArrayDeque<>();
+	private final Thread m_writer;
+
+	public TelemetryJournal(File directory, int segmentSize, int maxSegments) throws IOException {
+		m_directory = directory;
+		m_capacity = Math.max(1, (segmentSize - HEADER_SIZE) / JournalRecord.SIZE);
+		m_maxSegments = Math.max(1, maxSegments);
+
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Journal directory " + directory + " couldn't be created.");
+
+		// a new session continues after the newest segment on disk
+		long[] segments = listSegments(directory);
+		m_segment = segments.length > 0 ? segments[segments.length - 1] + 1 : 0;
+		m_session = m_segment;
+
+		m_buffer = mapSegment(m_segment);
+		startSegment();
+		deleteOldSegments(m_maxSegments);
+
+		m_writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		});
+		m_writer.setName("Journal writer");
+		m_writer.setDaemon(true);
+		m_writer.setPriority(Thread.MIN_PRIORITY);
+		m_writer.start();
+	}
+
+	public synchronized void append(JournalRecord record) {
+		// called once per tick, writes straight into the mapped segment
+		if(m_buffer == null)
+			return;
+
+		if(m_position + JournalRecord.SIZE > m_buffer.capacity()) {
+			if(m_next == null) {
+				// the writer is behind, the record is lost instead of blocking the tick
+				m_dropped++;
+				return;
+			}
+			m_retired.add(m_buffer);
+			m_buffer = m_next;
+			m_next = null;
+			m_segment++;
+			startSegment();
+			LockSupport.unpark(m_writer);
+		}
+
+		record.sequence = ++m_sequence;
+		record.writeTo(m_buffer, m_position);
+		m_position += JournalRecord.SIZE;
+	}
+
+	public void flush() {
+		// force doesn't need the lock, append keeps writing meanwhile
+		MappedByteBuffer buffer;
+		synchronized (this) {
+			buffer = m_buffer;
+		}
+		if(buffer != null)
+			buffer.force();
+	}
+
+	public void close() {
+		MappedByteBuffer buffer;
+		MappedByteBuffer next;
+		synchronized (this) {
+			buffer = m_buffer;
+			next = m_next;
+			m_buffer = null;
+			m_next = null;
+		}
+
+		// the writer forces the retired segments before it ends
+		LockSupport.unpark(m_writer);
+		try {
+			m_writer.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(buffer != null)
+			buffer.force();
+		if(next != null)
+			deleteSegment(m_segment + 1);
+	}
+
+	public File getDirectory() {
+		return m_directory;
+	}
+
+	public long getSession() {
+		return m_session;
+	}
+
+	public synchronized long getRecordCount() {
+		return m_sequence;
+	}
+
+	public synchronized long getDroppedCount() {
+		// records lost because the next segment wasn't mapped in time
+		return m_dropped;
+	}
+
+	private void writeLoop() {
+		while(true) {
+			MappedByteBuffer retired;
+			boolean open;
+			boolean prepare;
+			long segment;
+			synchronized (this) {
+				retired = m_retired.poll();
+				open = m_buffer != null;
+				prepare = open && m_next == null;
+				segment = m_segment + 1;
+			}
+
+			if(retired != null) {
+				retired.force();
+			}
+			else if(prepare) {
+				prepareSegment(segment);
+			}
+			else if(open) {
+				LockSupport.park(this);
+			}
+			else {
+				break;
+			}
+		}
+	}
+
+	private void prepareSegment(long segment) {
+		MappedByteBuffer next;
+		try {
+			next = mapSegment(segment);
+		} catch (IOException e) {
+			DebugHelper.log("Journal segment couldn't be created, journal closed: " + e.getMessage(), Log.WARNING);
+			synchronized (this) {
+				if(m_buffer != null)
+					m_retired.add(m_buffer);
+				m_buffer = null;
+			}
+			return;
+		}
+
+		boolean used;
+		synchronized (this) {
+			used = m_buffer != null && m_segment + 1 == segment;
+			if(used)
+				m_next = next;
+		}
+		if(!used) {
+			// closed in the meantime
+			deleteSegment(segment);
+			return;
+		}
+
+		// the prepared segment is kept in addition to the newest ones
+		deleteOldSegments(m_maxSegments + 1);
+	}
+
+	private MappedByteBuffer mapSegment(long segment) throws IOException {
+		int size = HEADER_SIZE + m_capacity * JournalRecord.SIZE;
+
+		// unwritten records read as zero
+		MappedByteBuffer buffer;
+		RandomAccessFile file = new RandomAccessFile(segmentFile(m_directory, segment), "rw");
+		try {
+			file.setLength(size);
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			// the mapping stays valid after the file is closed
+			file.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		// touch every page, so appending doesn't fault in new pages
+		for(int i = HEADER_SIZE; i < size; i += 4096) {
+			buffer.put(i, (byte) 0);
+		}
+
+		buffer.putInt(HEADER_MAGIC, MAGIC);
+		buffer.putInt(HEADER_VERSION, VERSION);
+		buffer.putInt(HEADER_RECORD_SIZE, JournalRecord.SIZE);
+		buffer.putInt(HEADER_CAPACITY, m_capacity);
+		buffer.putLong(HEADER_SEGMENT, segment);
+		buffer.putLong(HEADER_SESSION, m_session);
+		return buffer;
+	}
+
+	private void startSegment() {
+		// the start time is taken when the first record goes into the segment, not when it was mapped
+		m_buffer.putLong(HEADER_START_MILLIS, System.currentTimeMillis());
+		m_buffer.putLong(HEADER_START_NANOS, System.nanoTime());
+		m_position = HEADER_SIZE;
+	}
+
+	private void deleteSegment(long segment) {
+		if(!segmentFile(m_directory, segment).delete())
+			DebugHelper.log("Journal segment " + segment + " couldn't be deleted.", Log.WARNING);
+	}
+
+	private void deleteOldSegments(int keep) {
+		// keep the newest segments, including those of older sessions
+		long[] segments = listSegments(m_directory);
+		for(int i = 0; i < segments.length - keep; i++) {
+			deleteSegment(segments[i]);
+		}
+	}
+
+	static File segmentFile(File directory, long segment) {
+		return new File(directory, PREFIX + String.format("%08d", segment) + SUFFIX);
+	}
+
+	static long[] listSegments(File directory) {
+		String[] names = directory.list();
+		if(names == null)
+			return new long[0];
+
+		long[] segments = new long[names.length];
+		int count = 0;
+		for(String name : names) {
+			if(name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+				try {
+					segments[count] = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+					count++;
+				} catch (NumberFormatException e) {
+					// not a segment
+				}
+			}
+		}
+
+		segments = Arrays.copyOf(segments, count);
+		Arrays.sort(segments);
+		return segments;
+	}
+}
@@ -0,0 +1,297 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.philipp_mandler.hexapod.hexapod.Vec2i;
+import com.philipp_mandler.hexapod.hexapod.orientation.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+public class TerrainExtractor {
+
+	// ground height of a column without blocks
+	private final static int NONE = Integer.MIN_VALUE;
+
+	// rows of the depth frame voxelized by one task
+	private final static int TILE_ROWS = 30;
+
+	// null if the frame is voxelized on the calling thread
+	private final ForkJoinPool m_pool;
+
+	private ChunkManager m_chunks = new ChunkManager();
+	private ColumnIndex m_columns;
+	private int[][] m_groundHeights;
+	private HeightMapManager m_ground = new HeightMapManager();
+	private ChunkManager m_cleanedGround = new ChunkManager();
+	private BooleanMapManager m_obstacleMap = new BooleanMapManager();
+	private HeightMapManager m_obstacleHeightMap = new HeightMapManager();
+
+	public TerrainExtractor() {
+		this(1);
+	}
+
+	public TerrainExtractor(int parallelism) {
+		// the voxelization uses up to parallelism low priority threads, so real-time modules keep their cores
+		if(parallelism > 1) {
+			m_pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				@Override
+				public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+					ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+					thread.setName("Voxelizer " + thread.getPoolIndex());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			}, null, false);
+		}
+		else {
+			m_pool = null;
+		}
+	}
+
+	public void process(ByteBuffer kinectData) {
+		// the results of the last frame are replaced, not cleared
+		m_chunks = voxelize(kinectData);
+		m_columns = new ColumnIndex(m_chunks);
+
+		findGround();
+		cleanGround();
+		findObstacles();
+	}
+
+	ChunkManager voxelize(ByteBuffer kinectData) {
+		if(m_pool == null) {
+			ChunkManager chunks = new ChunkManager();
+			voxelize(kinectData, chunks, 0, KinectWorker.FRAME_HEIGHT);
+			return chunks;
+		}
+		return m_pool.invoke(new VoxelizeTask(kinectData, 0, KinectWorker.FRAME_HEIGHT));
+	}
+
+	private static class VoxelizeTask extends RecursiveTask<ChunkManager> {
+		private static final long serialVersionUID = 2920473181290545043L;
+
+		private final ByteBuffer m_kinectData;
+		private final int m_from;
+		private final int m_to;
+
+		VoxelizeTask(ByteBuffer kinectData, int from, int to) {
+			m_kinectData = kinectData;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected ChunkManager compute() {
+			// every tile gets its own chunks, they are merged in row order, so the chunks keep the order of a single thread
+			if(m_to - m_from <= TILE_ROWS) {
+				ChunkManager chunks = new ChunkManager();
+				voxelize(m_kinectData, chunks, m_from, m_to);
+				return chunks;
+			}
+
+			int middle = (m_from + m_to) >>> 1;
+			VoxelizeTask bottom = new VoxelizeTask(m_kinectData, middle, m_to);
+			bottom.fork();
+			ChunkManager chunks = new VoxelizeTask(m_kinectData, m_from, middle).compute();
+			chunks.or(bottom.join());
+			return chunks;
+		}
+	}
+
+	static void voxelize(ByteBuffer kinectData, ChunkManager chunks, int fromRow, int toRow) {
+		// only absolute reads, tiles can share the buffer
+		DepthProjection projection = DepthProjection.getKinect();
+		int w = KinectWorker.FRAME_WIDTH;
+		for(int y = fromRow; y < toRow; y++) {
+			for(int x = 0; x < w; x++) {
+				int value = kinectData.getShort((y * w + x) * 2);
+				if(projection.hasDepth(value))
+					chunks.setBlock(projection.getVoxelX(x, value), projection.getVoxelY(y, value), projection.getVoxelZ(value), true);
+			}
+		}
+	}
+
+	private void findGround() {
+		// the ground of a column is the top of its lowest span
+		m_groundHeights = new int[m_columns.getChunkColumns().size()][];
+		for(ColumnIndex.ChunkColumn column : m_columns.getChunkColumns()) {
+			int[] heights = new int[Chunk.WORDS];
+			for(int x = 0; x < Chunk.SIZE; x++) {
+				for(int z = 0; z < Chunk.SIZE; z++) {
+					heights[x * Chunk.SIZE + z] = column.getSpanCount(x, z) > 0 ? column.getSpanEnd(x, z, 0) : NONE;
+				}
+			}
+			m_groundHeights[column.getIndex()] = heights;
+		}
+	}
+
+	private void cleanGround() {
+		// ground blocks with less than three ground blocks around them are dropped
+		m_ground = new HeightMapManager();
+		m_cleanedGround = new ChunkManager();
+
+		for(ColumnIndex.ChunkColumn column : m_columns.getChunkColumns()) {
+			int[] heights = m_groundHeights[column.getIndex()];
+			int bottomEnd = (column.getBottom() + 1) * Chunk.SIZE;
+
+			// only chunk columns with ground in their lowest chunk are cleaned
+			boolean hasGround = false;
+			for(int height : heights) {
+				if(height != NONE && height < bottomEnd) {
+					hasGround = true;
+					break;
+				}
+			}
+			if(!hasGround) continue;
+
+			for(int x = 0; x < Chunk.SIZE; x++) {
+				for(int z = 0; z < Chunk.SIZE; z++) {
+					int height = heights[x * Chunk.SIZE + z];
+					if(height != NONE && height < bottomEnd) {
+						cleanBlock(column, x, z, height);
+						continue;
+					}
+
+					// without ground in the lowest chunk, every block of the next chunk above with blocks in this column is checked
+					int spans = column.getSpanCount(x, z);
+					int chunkTop = NONE;
+					for(int i = 0; i < spans; i++) {
+						int start = column.getSpanStart(x, z, i);
+						int end = column.getSpanEnd(x, z, i);
+						if(end < bottomEnd) continue;
+						if(chunkTop == NONE)
+							chunkTop = (ChunkManager.toChunk(Math.max(start, bottomEnd)) + 1) * Chunk.SIZE - 1;
+						if(start > chunkTop) break;
+						for(int y = Math.max(start, bottomEnd); y <= Math.min(end, chunkTop); y++) {
+							cleanBlock(column, x, z, y);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void cleanBlock(ColumnIndex.ChunkColumn column, int x, int z, int y) {
+		int blockAround = 0;
+		for(int i = -1; i <= 1; i++) {
+			for(int k = -1; k <= 1; k++) {
+				// a column has one ground block at most
+				int height = getGroundHeight(column, x + i, z + k);
+				if(height == NONE) continue;
+				if(height == y - 1 || height == y + 1 || (height == y && (i != 0 || k != 0)))
+					blockAround++;
+			}
+		}
+
+		if(blockAround > 2) {
+			int globalX = x + column.getX() * Chunk.SIZE;
+			int globalZ = z + column.getZ() * Chunk.SIZE;
+			m_cleanedGround.setBlock(globalX, y, globalZ, true);
+			m_ground.setHeight(new Vec2i(globalX, globalZ), y);
+		}
+	}
+
+	private int getGroundHeight(ColumnIndex.ChunkColumn column, int x, int z) {
+		// x and z may be one column outside of the chunk column
+		int neighbourX = x < 0 ? -1 : (x >= Chunk.SIZE ? 1 : 0);
+		int neighbourZ = z < 0 ? -1 : (z >= Chunk.SIZE ? 1 : 0);
+		if(neighbourX != 0 || neighbourZ != 0) {
+			column = column.getNeighbour(neighbourX, neighbourZ);
+			if(column == null)
+				return NONE;
+		}
+		return m_groundHeights[column.getIndex()][(x & 63) * Chunk.SIZE + (z & 63)];
+	}
+
+	private void findObstacles() {
+		// blocks above the cleaned ground are obstacles, only the lowest chunk of a chunk column is searched
+		m_obstacleMap = new BooleanMapManager();
+		m_obstacleHeightMap = new HeightMapManager();
+
+		int[] obstacleHeights = new int[Chunk.WORDS];
+		for(Chunk chunk : m_chunks.getChunks()) {
+			ColumnIndex.ChunkColumn column = m_columns.getChunkColumn(chunk.getOrigin().getX(), chunk.getOrigin().getZ());
+			if(chunk.getOrigin().getY() != column.getBottom()) continue;
+
+			int base = column.getBottom() * Chunk.SIZE;
+			boolean hasObstacle = false;
+			for(int x = 0; x < Chunk.SIZE; x++) {
+				for(int z = 0; z < Chunk.SIZE; z++) {
+					int top = chunk.getHighestBlock(x, z);
+					obstacleHeights[x * Chunk.SIZE + z] = NONE;
+					if(top == -1) continue;
+
+					// a missing height map counts as ground height 0
+					Integer groundHeight = m_ground.getHeight(new Vec2i(x + column.getX() * Chunk.SIZE, z + column.getZ() * Chunk.SIZE));
+					if(groundHeight == null || base + top > groundHeight) {
+						obstacleHeights[x * Chunk.SIZE + z] = base + top;
+						hasObstacle = true;
+					}
+				}
+			}
+			if(!hasObstacle) continue;
+
+			for(int x = 0; x < Chunk.SIZE; x++) {
+				for(int z = 0; z < Chunk.SIZE; z++) {
+					int height = obstacleHeights[x * Chunk.SIZE + z];
+					if(height == NONE) {
+						// without obstacles in the lowest chunk the top of the next chunk above with blocks in this column is taken
+						height = getTopAbove(column, x, z, base + Chunk.SIZE);
+						if(height == NONE) continue;
+					}
+
+					Vec2i pos = new Vec2i(x + column.getX() * Chunk.SIZE, z + column.getZ() * Chunk.SIZE);
+					m_obstacleHeightMap.setHeight(pos, height);
+					m_obstacleMap.setValue(pos, true);
+				}
+			}
+		}
+	}
+
+	private int getTopAbove(ColumnIndex.ChunkColumn column, int x, int z, int bottom) {
+		int spans = column.getSpanCount(x, z);
+		int chunkTop = NONE;
+		int top = NONE;
+		for(int i = 0; i < spans; i++) {
+			int start = column.getSpanStart(x, z, i);
+			int end = column.getSpanEnd(x, z, i);
+			if(end < bottom) continue;
+			if(chunkTop == NONE)
+				chunkTop = (ChunkManager.toChunk(Math.max(start, bottom)) + 1) * Chunk.SIZE - 1;
+			if(start > chunkTop) break;
+			top = Math.min(end, chunkTop);
+		}
+		return top;
+	}
+
+	public void shutdown() {
+		if(m_pool != null)
+			m_pool.shutdown();
+	}
+
+	public ChunkManager getChunks() {
+		return m_chunks;
+	}
+
+	public ColumnIndex getColumns() {
+		return m_columns;
+	}
+
+	public HeightMapManager getGround() {
+		return m_ground;
+	}
+
+	public ChunkManager getCleanedGround() {
+		return m_cleanedGround;
+	}
+
+	public BooleanMapManager getObstacleMap() {
+		return m_obstacleMap;
+	}
+
+	public HeightMapManager getObstacleHeightMap() {
+		return m_obstacleHeightMap;
+	}
+}
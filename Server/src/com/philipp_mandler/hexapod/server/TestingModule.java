@@ -9,14 +9,12 @@ import java.nio.ByteBuffer;
 
 public class TestingModule extends Module implements DepthHandler {
 
-	private Context m_Context;
 	private Device m_kinect;
 	private JFrame m_frame;
 	private KinectDisplay m_kinectDisplay;
 
 	public TestingModule() {
-		m_Context = Freenect.createContext();
-
+		setTickRate(30);
 	}
 
 	@Override
@@ -29,7 +27,7 @@ public class TestingModule extends Module implements DepthHandler {
 		DebugHelper.log("Module started");
 
 		// detect devices
-		DebugHelper.log("Devices detected: " + m_Context.numDevices());
+		DebugHelper.log("Devices detected: " + Main.getSensorManager().getDeviceCount());
 		m_kinect = Main.getSensorManager().getKinect();
 
 		// start Kinect
@@ -0,0 +1,1073 @@
+package com.philipp_mandler.hexapod.server;
+
+import com.philipp_mandler.hexapod.hexapod.Vec2;
+import com.philipp_mandler.hexapod.hexapod.Vec2i;
+import com.philipp_mandler.hexapod.hexapod.Vec3;
+import com.philipp_mandler.hexapod.hexapod.Vec3i;
+import com.philipp_mandler.hexapod.hexapod.WalkingGait;
+import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
+import com.philipp_mandler.hexapod.hexapod.orientation.BooleanMap;
+import com.philipp_mandler.hexapod.hexapod.orientation.BooleanMapManager;
+import com.philipp_mandler.hexapod.hexapod.orientation.Chunk;
+import com.philipp_mandler.hexapod.hexapod.orientation.ChunkManager;
+import com.philipp_mandler.hexapod.hexapod.orientation.HeightMap;
+import com.philipp_mandler.hexapod.hexapod.orientation.HeightMapManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class TickBenchmark {
+
+	private final static int WARMUP_ITERATIONS = 3;
+	private final static int ITERATIONS = 5;
+	private final static long ITERATION_TIME = 1000000000L;
+	private final static int BATCH = 100;
+
+	// mobility tick period and the time each phase of the isolation run takes
+	private final static long TICK_PERIOD = 5000000L;
+	private final static long ISOLATION_TIME = 3000000000L;
+
+	// cycles before and while allocations are counted
+	private final static int ALLOCATION_WARMUP = 20000;
+	private final static int ALLOCATION_CYCLES = 10000;
+
+	// depth frames compared with the old terrain pipeline, every fifth one is left undisturbed
+	private final static int TERRAIN_FRAMES = 40;
+
+	// results are written here, so the JIT can't drop the measured code
+	static volatile double m_sink;
+
+	static abstract class Case {
+		private final String m_name;
+
+		Case(String name) {
+			m_name = name;
+		}
+
+		String getName() {
+			return m_name;
+		}
+
+		int getBatch() {
+			return BATCH;
+		}
+
+		void setUp() {
+
+		}
+
+		abstract void run();
+	}
+
+	static abstract class Check {
+		private final String m_name;
+
+		Check(String name) {
+			m_name = name;
+		}
+
+		String getName() {
+			return m_name;
+		}
+
+		// null if the check passed, the reason otherwise
+		abstract String run();
+	}
+
+	public static void main(String[] args) {
+		// only cases containing the filter run, e.g. "gait", "isolation" or "check"
+		String filter = args.length > 0 ? args[0].toLowerCase() : "";
+
+		// depth frames saved with "vision save <file>", a synthetic frame otherwise
+		ByteBuffer[] frames;
+		try {
+			frames = loadFrames(args);
+		} catch (IOException e) {
+			System.out.println("Depth frame couldn't be read: " + e.getMessage());
+			return;
+		}
+
+		// the module runs against simulated servos, nothing leaves this process
+		DebugHelper.setBroadcastEnabled(false);
+		DebugHelper.setConsoleEnabled(false);
+		ActuatorManager actuators = new ActuatorManager("sim:20", 1000000);
+		actuators.getBusScheduler().stop();
+		MobilityModule mobility = new MobilityModule(actuators, new TimeManager(1000, null));
+
+		List<Case> cases = new ArrayList<>();
+		for(WalkingGait gait : WalkingGait.values()) {
+			for(int adaption = 0; adaption < 2; adaption++) {
+				for(int leveling = 0; leveling < 2; leveling++) {
+					cases.add(createGaitCase(mobility, gait, adaption == 1, leveling == 1));
+				}
+			}
+		}
+		cases.add(createKinematicsCase(mobility));
+		cases.add(createPlaneCase());
+		cases.add(createEncodingCase());
+		cases.add(createSyncWriteCase());
+		cases.add(createProjectionCase(frames, false));
+		cases.add(createProjectionCase(frames, true));
+		cases.add(createVoxelizeCase(frames, 1));
+		cases.add(createVoxelizeCase(frames, 4));
+		cases.add(createNeighbourCase(frames));
+		cases.add(createFrameCase(frames));
+
+		List<Check> checks = new ArrayList<>();
+		checks.add(createWireCheck());
+		checks.add(createSyncAllocationCheck());
+		checks.add(createTimeAllocationCheck(actuators, mobility));
+		checks.add(createTerrainCheck());
+
+		// checks run first, a failed check ends the benchmark with exit code 1
+		int failed = 0;
+		for(Check check : checks) {
+			if(check.getName().contains(filter) && !runCheck(check))
+				failed++;
+		}
+
+		boolean header = false;
+		for(Case benchmark : cases) {
+			if(benchmark.getName().contains(filter)) {
+				if(!header) {
+					System.out.println(String.format("%-40s %12s %12s %12s", "case", "ns/op", "error", "bytes/op"));
+					header = true;
+				}
+				measure(benchmark);
+			}
+		}
+
+		if("isolation".contains(filter) || filter.isEmpty())
+			runIsolation(mobility);
+
+		actuators.shutdown();
+		DebugHelper.shutdown();
+
+		if(failed > 0)
+			System.exit(1);
+	}
+
+	private static boolean runCheck(Check check) {
+		String failure;
+		try {
+			failure = check.run();
+		} catch (Exception e) {
+			failure = e.toString();
+		}
+		System.out.println(String.format("%-40s %s", check.getName(), failure == null ? "ok" : "FAILED: " + failure));
+		return failure == null;
+	}
+
+	private static void measure(Case benchmark) {
+		benchmark.setUp();
+
+		for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+			runIteration(benchmark);
+		}
+
+		double[] results = new double[ITERATIONS];
+		long bytes = 0;
+		long ops = 0;
+		for(int i = 0; i < ITERATIONS; i++) {
+			long allocated = getAllocatedBytes();
+			long[] iteration = runIteration(benchmark);
+			bytes += getAllocatedBytes() - allocated;
+			ops += iteration[1];
+			results[i] = (double) iteration[0] / iteration[1];
+		}
+
+		double mean = 0;
+		for(double result : results) {
+			mean += result;
+		}
+		mean /= ITERATIONS;
+
+		double variance = 0;
+		for(double result : results) {
+			variance += (result - mean) * (result - mean);
+		}
+		double error = Math.sqrt(variance / (ITERATIONS - 1));
+
+		String allocation = bytes < 0 ? "n/a" : String.format("%.1f", (double) bytes / ops);
+		System.out.println(String.format("%-40s %12.1f %12.1f %12s", benchmark.getName(), mean, error, allocation));
+	}
+
+	private static long[] runIteration(Case benchmark) {
+		// returns the elapsed nanoseconds and the number of operations
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			int batch = benchmark.getBatch();
+			for(int i = 0; i < batch; i++) {
+				benchmark.run();
+			}
+			ops += batch;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < ITERATION_TIME);
+		return new long[] {elapsed, ops};
+	}
+
+	private static long getAllocatedBytes() {
+		// only available on HotSpot, -1 otherwise
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	private static JournalRecord createWalkingRecord(boolean adaption, boolean leveling) {
+		// lifted and walking diagonally while turning, 5 ms per tick
+		JournalRecord record = new JournalRecord();
+		record.modeStart = 2;
+		record.elapsed = TICK_PERIOD;
+		record.speedX = 0.3;
+		record.speedY = 0.8;
+		record.rotationSpeed = 0.2;
+		record.heightGoal = 100;
+		record.flags = JournalRecord.FLAG_LEVEL;
+		if(adaption) record.flags |= JournalRecord.FLAG_GROUND_ADAPTION;
+		if(leveling) record.flags |= JournalRecord.FLAG_LEVELING;
+		record.level[0] = 0.05;
+		record.level[1] = -0.99;
+		record.level[2] = 0.1;
+		for(int i = 0; i < 6; i++) {
+			record.loads[i] = 100 + i * 20;
+		}
+		return record;
+	}
+
+	private static void prepareGait(MobilityModule mobility, WalkingGait gait) {
+		// the gait switches in the first idle tick
+		JournalRecord idle = new JournalRecord();
+		idle.modeStart = 2;
+		idle.elapsed = TICK_PERIOD;
+		idle.heightGoal = 100;
+		idle.switchGait = gait.ordinal();
+		mobility.resetReplay();
+		mobility.replay(idle);
+	}
+
+	private static Case createGaitCase(final MobilityModule mobility, final WalkingGait gait, boolean adaption, boolean leveling) {
+		final JournalRecord record = createWalkingRecord(adaption, leveling);
+		String name = "gait " + gait.name().toLowerCase() + (adaption ? " +adaption" : "") + (leveling ? " +leveling" : "");
+		return new Case(name) {
+			@Override
+			void setUp() {
+				prepareGait(mobility, gait);
+			}
+
+			@Override
+			void run() {
+				mobility.replay(record);
+			}
+		};
+	}
+
+	private static Case createKinematicsCase(final MobilityModule mobility) {
+		final Leg[] legs = mobility.getLegs();
+		return new Case("inverse kinematics 6 legs") {
+			@Override
+			void setUp() {
+				// a walking pose instead of the default positions
+				prepareGait(mobility, WalkingGait.Ripple);
+				JournalRecord record = createWalkingRecord(false, false);
+				for(int i = 0; i < 100; i++) {
+					mobility.replay(record);
+				}
+			}
+
+			@Override
+			void run() {
+				for(Leg leg : legs) {
+					leg.updateServos();
+				}
+				m_sink = legs[0].getServo(0).getPosValue();
+			}
+		};
+	}
+
+	private static Case createPlaneCase() {
+		final Plane plane = new Plane(new Vec3(520, 410, 3.5), new Vec3(480, 395, -2.0), new Vec3(500, 400, 0.5));
+		final Vec2 position = new Vec2(320, 710);
+		return new Case("plane getZ") {
+			@Override
+			void run() {
+				m_sink = plane.getZ(position);
+			}
+		};
+	}
+
+	private static Case createEncodingCase() {
+		final InstructionPacket packet = new InstructionPacket();
+		return new Case("sync write encoding 18 servos") {
+			@Override
+			void run() {
+				packet.begin(ServoController.DX_BROADCAST_ID, ServoController.DX_INST_SYNC_WRITE);
+				packet.add(ServoController.DX_CMD_GOAL_POS);
+				packet.add(2);
+				for(int i = 1; i <= 18; i++) {
+					packet.add(i);
+					packet.addWord(2048 + i * 16);
+				}
+				packet.finish();
+				m_sink = packet.getSize();
+			}
+		};
+	}
+
+	private static Case createSyncWriteCase() {
+		// the whole controller path on a bus that drops everything
+		final ServoController controller = new ServoController();
+		controller.init(new ServoBus() {
+			@Override
+			public void setListener(ServoBusListener listener) {
+
+			}
+
+			@Override
+			public boolean write(byte[] data, int offset, int length) {
+				return true;
+			}
+
+			@Override
+			public int getBaudRate() {
+				return 1000000;
+			}
+
+			@Override
+			public void close() {
+
+			}
+		});
+
+		final int[] ids = new int[18];
+		final int[] values = new int[18];
+		for(int i = 0; i < 18; i++) {
+			ids[i] = i + 1;
+			values[i] = 2048 + i * 16;
+		}
+
+		return new Case("sync write 18 servos") {
+			@Override
+			void run() {
+				controller.syncWriteWords(ServoController.DX_CMD_GOAL_POS, ids, values, 18);
+			}
+		};
+	}
+
+	static class CapturingServoBus implements ServoBus {
+		// everything written to the bus, nothing is answered
+		private final ByteArrayOutputStream m_written = new ByteArrayOutputStream();
+
+		@Override
+		public void setListener(ServoBusListener listener) {
+
+		}
+
+		@Override
+		public boolean write(byte[] data, int offset, int length) {
+			m_written.write(data, offset, length);
+			return true;
+		}
+
+		@Override
+		public int getBaudRate() {
+			return 1000000;
+		}
+
+		@Override
+		public void close() {
+
+		}
+
+		byte[] take() {
+			byte[] written = m_written.toByteArray();
+			m_written.reset();
+			return written;
+		}
+	}
+
+	static class ByteWiseEncoder {
+		// instruction packets written byte by byte, the way ServoController sent them before the packet writer
+		private final ByteArrayOutputStream m_written = new ByteArrayOutputStream();
+		private int m_curChecksum;
+
+		private void write(int data) {
+			m_written.write(data);
+		}
+
+		byte[] take() {
+			byte[] written = m_written.toByteArray();
+			m_written.reset();
+			return written;
+		}
+
+		void ping(int id) {
+			m_curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(id);
+			m_curChecksum += id;
+			write(2);
+			m_curChecksum += 2;
+			write(ServoController.DX_INST_PING);
+			m_curChecksum += ServoController.DX_INST_PING;
+			write(ServoController.calcChecksum(m_curChecksum));
+		}
+
+		void action(int id) {
+			m_curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(id);
+			m_curChecksum += id;
+			write(2);
+			m_curChecksum += 2;
+			write(ServoController.DX_INST_ACTION);
+			m_curChecksum += ServoController.DX_INST_ACTION;
+			write(ServoController.calcChecksum(m_curChecksum));
+		}
+
+		void readData(int id, int addr, int readLength) {
+			m_curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(id);
+			m_curChecksum += id;
+			write(2 + 2);
+			m_curChecksum += 2 + 2;
+			write(ServoController.DX_INST_READ_DATA);
+			m_curChecksum += ServoController.DX_INST_READ_DATA;
+			write(addr);
+			m_curChecksum += addr;
+			write(readLength);
+			m_curChecksum += readLength;
+			write(ServoController.calcChecksum(m_curChecksum));
+		}
+
+		void writeDataByte(int id, int addr, int data, boolean regWrite) {
+			m_curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(id);
+			m_curChecksum += id;
+			write(1 + 3);
+			m_curChecksum += 1 + 3;
+			int instruction = regWrite ? ServoController.DX_INST_REG_WRITE : ServoController.DX_INST_WRITE_DATA;
+			write(instruction);
+			m_curChecksum += instruction;
+			write(addr);
+			m_curChecksum += addr;
+			write(data & 0x00FF);
+			m_curChecksum += data & 0x00FF;
+			write(ServoController.calcChecksum(m_curChecksum));
+		}
+
+		void writeData2Bytes(int id, int addr, int data, boolean regWrite) {
+			m_curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(id);
+			m_curChecksum += id;
+			write(2 + 3);
+			m_curChecksum += 2 + 3;
+			int instruction = regWrite ? ServoController.DX_INST_REG_WRITE : ServoController.DX_INST_WRITE_DATA;
+			write(instruction);
+			m_curChecksum += instruction;
+			write(addr);
+			m_curChecksum += addr;
+			write(data & 0x00FF);
+			m_curChecksum += data & 0x00FF;
+			write((data & 0xFF00) >> 8);
+			m_curChecksum += (data & 0xFF00) >> 8;
+			write(ServoController.calcChecksum(m_curChecksum));
+		}
+
+		void syncWrite(int address, int length, int[] idList, int[][] dataList) {
+			int curChecksum = 0;
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BEGIN);
+			write(ServoController.DX_BROADCAST_ID);
+			curChecksum += ServoController.DX_BROADCAST_ID;
+			int l = (length + 1) * idList.length + 4;
+			write(l);
+			curChecksum += l;
+			write(ServoController.DX_INST_SYNC_WRITE);
+			curChecksum += ServoController.DX_INST_SYNC_WRITE;
+			write(address);
+			curChecksum += address;
+			write(length);
+			curChecksum += length;
+			for(int i = 0; i < idList.length; i++) {
+				write(idList[i]);
+				curChecksum += idList[i];
+				for(int j = 0; j < length; j++) {
+					write(dataList[i][j]);
+					curChecksum += dataList[i][j];
+				}
+			}
+			write(ServoController.calcChecksum(curChecksum));
+		}
+	}
+
+	private static String compareWire(String instruction, byte[] expected, byte[] written) {
+		if(Arrays.equals(expected, written))
+			return null;
+		return instruction + " wrote " + Arrays.toString(written) + " instead of " + Arrays.toString(expected);
+	}
+
+	private static Check createWireCheck() {
+		// the bytes of every instruction have to be the same as with the byte-wise writes
+		return new Check("check instruction packet bytes") {
+			@Override
+			String run() {
+				CapturingServoBus bus = new CapturingServoBus();
+				ServoController controller = new ServoController();
+				controller.init(bus);
+				controller.setTimeout(1000000L);
+				ByteWiseEncoder expected = new ByteWiseEncoder();
+				String failure;
+
+				// high ids and values, so the checksums overflow a byte
+				int[] ids = {1, 7, 18, 200, 253};
+				for(int id : ids) {
+					controller.ping(id);
+					expected.ping(id);
+					if((failure = compareWire("ping " + id, expected.take(), bus.take())) != null)
+						return failure;
+
+					controller.readData(id, ServoController.DX_CMD_PRESENT_POS, 8);
+					expected.readData(id, ServoController.DX_CMD_PRESENT_POS, 8);
+					if((failure = compareWire("read " + id, expected.take(), bus.take())) != null)
+						return failure;
+
+					for(int regWrite = 0; regWrite < 2; regWrite++) {
+						controller.writeDataByte(id, ServoController.DX_CMD_TORQUE_ENABLE, 0xF1, regWrite == 1);
+						expected.writeDataByte(id, ServoController.DX_CMD_TORQUE_ENABLE, 0xF1, regWrite == 1);
+						if((failure = compareWire("write byte " + id, expected.take(), bus.take())) != null)
+							return failure;
+
+						controller.writeData2Bytes(id, ServoController.DX_CMD_GOAL_POS, 0xFFE + id, regWrite == 1);
+						expected.writeData2Bytes(id, ServoController.DX_CMD_GOAL_POS, 0xFFE + id, regWrite == 1);
+						if((failure = compareWire("write word " + id, expected.take(), bus.take())) != null)
+							return failure;
+					}
+				}
+
+				controller.action(ServoController.DX_BROADCAST_ID);
+				expected.action(ServoController.DX_BROADCAST_ID);
+				if((failure = compareWire("action", expected.take(), bus.take())) != null)
+					return failure;
+
+				// all 18 legs, the word and the generic sync write
+				int[] syncIDs = new int[18];
+				int[] values = new int[18];
+				int[][] data = new int[18][2];
+				for(int i = 0; i < 18; i++) {
+					syncIDs[i] = i + 1;
+					values[i] = 4095 - i * 97;
+					data[i][0] = values[i] & 0x00FF;
+					data[i][1] = (values[i] & 0xFF00) >> 8;
+				}
+				controller.syncWriteWords(ServoController.DX_CMD_GOAL_POS, syncIDs, values, 18);
+				expected.syncWrite(ServoController.DX_CMD_GOAL_POS, 2, syncIDs, data);
+				if((failure = compareWire("sync write words", expected.take(), bus.take())) != null)
+					return failure;
+
+				controller.syncWrite(ServoController.DX_CMD_GOAL_POS, 2, syncIDs, data);
+				expected.syncWrite(ServoController.DX_CMD_GOAL_POS, 2, syncIDs, data);
+				return compareWire("sync write", expected.take(), bus.take());
+			}
+		};
+	}
+
+	private static Check createSyncAllocationCheck() {
+		// a sync write of all 20 servos with changed goals must not allocate anything
+		return new Check("check sync write allocation") {
+			@Override
+			String run() {
+				ActuatorManager actuators = new ActuatorManager("sim:20", 1000000);
+				try {
+					actuators.getBusScheduler().stop();
+					// the servos were found on the simulated bus, the writes are dropped from now on
+					actuators.getServoController().init(new CapturingServoBus() {
+						@Override
+						public boolean write(byte[] data, int offset, int length) {
+							return true;
+						}
+					});
+
+					SingleServo[] servos = new SingleServo[20];
+					for(int i = 0; i < 18; i++) {
+						servos[i] = actuators.getLegServo(i / 3, i % 3);
+					}
+					servos[18] = actuators.getKinectServo(0);
+					servos[19] = actuators.getKinectServo(1);
+
+					for(int i = 0; i < ALLOCATION_WARMUP; i++) {
+						runSyncCycle(actuators, servos, i);
+					}
+
+					long bytes = getAllocatedBytes();
+					if(bytes < 0)
+						return null;
+					// the bytes of the measurement itself
+					long overhead = getAllocatedBytes() - bytes;
+
+					bytes = getAllocatedBytes();
+					for(int i = 0; i < ALLOCATION_CYCLES; i++) {
+						runSyncCycle(actuators, servos, i);
+					}
+					bytes = getAllocatedBytes() - bytes - overhead;
+
+					if(actuators.getServoController().getBytesSent() == 0)
+						return "nothing was written";
+					if(bytes > 0)
+						return String.format("%.2f bytes allocated per cycle", (double) bytes / ALLOCATION_CYCLES);
+					return null;
+				} finally {
+					actuators.shutdown();
+				}
+			}
+		};
+	}
+
+	private static Check createTimeAllocationCheck(final ActuatorManager actuators, final MobilityModule mobility) {
+		// the modules are ticked by a module manager, no tick may create a Time
+		return new Check("check module ticks create no time") {
+			@Override
+			String run() {
+				final JournalRecord record = createWalkingRecord(true, true);
+				prepareGait(mobility, WalkingGait.Ripple);
+
+				// mobility and vision need the network and the Kinect to start, only their ticks run here
+				Module walking = new BenchmarkModule("mobility", 1000000000.0 / TICK_PERIOD) {
+					@Override
+					public void tick(long tick, Time elapsedTime) {
+						mobility.replay(record);
+					}
+				};
+				walking.setSchedulingClass(Module.SCHEDULING_REALTIME);
+				final VideoStreamer streamer = new VideoStreamer();
+				Module vision = new BenchmarkModule("vision", 30) {
+					@Override
+					public void tick(long tick, Time elapsedTime) {
+						streamer.tick(elapsedTime);
+					}
+				};
+				BatteryModule battery = new BatteryModule(actuators);
+				battery.setTickRate(100);
+
+				ModuleManager manager = new ModuleManager();
+				Module[] modules = {walking, vision, battery};
+				for(Module module : modules) {
+					manager.registerModule(module);
+					manager.startModule(module);
+				}
+
+				try {
+					sleep(ISOLATION_TIME / 10);
+					long created = Time.getCreatedCount();
+					long[] ticks = new long[modules.length];
+					for(int i = 0; i < modules.length; i++) {
+						ticks[i] = modules[i].getSchedule().getTickCount();
+					}
+
+					sleep(ISOLATION_TIME / 3);
+					created = Time.getCreatedCount() - created;
+
+					for(int i = 0; i < modules.length; i++) {
+						if(modules[i].getSchedule().getTickCount() == ticks[i])
+							return modules[i].getName() + " wasn't ticked";
+					}
+					if(created > 0)
+						return created + " Time instances created";
+					return null;
+				} finally {
+					manager.stop();
+				}
+			}
+		};
+	}
+
+	private static Check createTerrainCheck() {
+		// the extractor has to give the same ground and obstacles as the old chunk walks
+		return new Check("check terrain matches old pipeline") {
+			@Override
+			String run() {
+				Random random = new Random(42);
+				TerrainExtractor extractor = new TerrainExtractor(1);
+				OldTerrainPipeline old = new OldTerrainPipeline();
+				try {
+					for(int i = 0; i < TERRAIN_FRAMES; i++) {
+						ByteBuffer frame = createSyntheticFrame();
+						int mode = i % 5;
+						for(int pos = 0; pos < KinectWorker.FRAME_WIDTH * KinectWorker.FRAME_HEIGHT; pos++) {
+							frame.putShort(pos * 2, (short) disturbDepth(random, mode, frame.getShort(pos * 2)));
+						}
+
+						old.process(frame);
+						extractor.process(frame);
+
+						// the obstacle maps are compared in map order, ground maps and chunks are sorted
+						String step = null;
+						if(!describe(old.getObstacleMap()).equals(describe(extractor.getObstacleMap())))
+							step = "obstacle map";
+						else if(!describe(old.getObstacleHeightMap(), false).equals(describe(extractor.getObstacleHeightMap(), false)))
+							step = "obstacle heights";
+						else if(!describe(old.getGround(), true).equals(describe(extractor.getGround(), true)))
+							step = "ground heights";
+						else if(!describe(old.getCleanedGround()).equals(describe(extractor.getCleanedGround())))
+							step = "cleaned ground";
+						if(step != null)
+							return step + " differs in frame " + i + " (mode " + mode + ", " + old.getChunks().getChunks().size() + " chunks)";
+					}
+					return null;
+				} finally {
+					extractor.shutdown();
+				}
+			}
+		};
+	}
+
+	private static int disturbDepth(Random random, int mode, int value) {
+		// 0: synthetic, 1: dropouts and noise, 2: random with gaps, 3: near the tan() singularity, 4: random
+		switch(mode) {
+			case 1:
+				if(random.nextInt(20) == 0) value = 2047;
+				if(random.nextInt(30) == 0) value = value + random.nextInt(60) - 30;
+				return value;
+			case 2:
+				return random.nextInt(4) == 0 ? random.nextInt(2048) : 2047;
+			case 3:
+				return random.nextInt(50) == 0 ? 1080 + random.nextInt(30) : value;
+			case 4:
+				return 400 + random.nextInt(700);
+			default:
+				return value;
+		}
+	}
+
+	private static String describe(BooleanMapManager maps) {
+		StringBuilder builder = new StringBuilder();
+		for(BooleanMap map : maps.getBooleanMaps()) {
+			builder.append(map.getOrigin().getX()).append(',').append(map.getOrigin().getY()).append(':');
+			for(int x = 0; x < 64; x++) {
+				for(int y = 0; y < 64; y++) {
+					if(map.getValue(new Vec2i(x, y)))
+						builder.append(x * 64 + y).append(' ');
+				}
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	private static String describe(HeightMapManager maps, boolean sorted) {
+		List<String> lines = new ArrayList<>();
+		for(HeightMap map : maps.getHeightMaps()) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(map.getOrigin().getX()).append(',').append(map.getOrigin().getY()).append(':');
+			for(int x = 0; x < 64; x++) {
+				for(int y = 0; y < 64; y++) {
+					Integer height = map.getHeight(new Vec2i(x, y));
+					if(height != null)
+						builder.append(x * 64 + y).append('=').append(height).append(' ');
+				}
+			}
+			lines.add(builder.toString());
+		}
+		if(sorted)
+			Collections.sort(lines);
+		return lines.toString();
+	}
+
+	private static String describe(ChunkManager chunks) {
+		List<String> lines = new ArrayList<>();
+		for(Chunk chunk : chunks.getChunks()) {
+			if(!chunk.isEmpty())
+				lines.add(chunk.getOrigin().getX() + "," + chunk.getOrigin().getY() + "," + chunk.getOrigin().getZ() + ":" + Arrays.hashCode(chunk.getWords()));
+		}
+		Collections.sort(lines);
+		return lines.toString();
+	}
+
+	private static void runSyncCycle(ActuatorManager actuators, SingleServo[] servos, int cycle) {
+		// every goal moves, so every servo is part of the sync write
+		double goal = (cycle & 1) == 0 ? 2.0 : 2.5;
+		for(SingleServo servo : servos) {
+			servo.setGoalPosition(goal);
+		}
+		actuators.syncUpdateServos();
+	}
+
+	private static ByteBuffer[] loadFrames(String[] args) throws IOException {
+		if(args.length < 2)
+			return new ByteBuffer[] {createSyntheticFrame()};
+
+		ByteBuffer[] frames = new ByteBuffer[args.length - 1];
+		for(int i = 1; i < args.length; i++) {
+			frames[i - 1] = KinectWorker.loadFrame(new File(args[i]));
+		}
+		return frames;
+	}
+
+	private static ByteBuffer createSyntheticFrame() {
+		// a floor 30 cm below the camera, a wall at 3.5 m and a box at 1.5 m
+		ByteBuffer frame = ByteBuffer.allocate(KinectWorker.FRAME_SIZE);
+		frame.order(ByteOrder.LITTLE_ENDIAN);
+		int w = KinectWorker.FRAME_WIDTH;
+		int h = KinectWorker.FRAME_HEIGHT;
+		for(int y = 0; y < h; y++) {
+			for(int x = 0; x < w; x++) {
+				// inverse of DepthProjection
+				double distance = 3.5;
+				if(y > h / 2) {
+					double floor = 10.0 - 0.3 / ((y - h / 2) * 0.00021);
+					if(floor > 0.5 && floor < distance)
+						distance = floor;
+				}
+				if(x > 380 && x < 480 && y > 200 && y < 330)
+					distance = 1.5;
+				int value = (int) Math.round((Math.atan(distance / 0.1236) - 1.1863) * 2842.5);
+				frame.putShort((y * w + x) * 2, (short) value);
+			}
+		}
+		return frame;
+	}
+
+	private static Case createProjectionCase(final ByteBuffer[] frames, final boolean tables) {
+		// only the voxel coordinates of every pixel, without the chunks
+		final DepthProjection projection = DepthProjection.getKinect();
+		return new Case("depth projection " + (tables ? "tables" : "Math.tan")) {
+			private int m_frame = 0;
+
+			@Override
+			int getBatch() {
+				return 1;
+			}
+
+			@Override
+			void run() {
+				ByteBuffer frame = frames[m_frame++ % frames.length];
+				int w = KinectWorker.FRAME_WIDTH;
+				int h = KinectWorker.FRAME_HEIGHT;
+				long sum = 0;
+				for(int y = 0; y < h; y++) {
+					for(int x = 0; x < w; x++) {
+						int value = frame.getShort((y * w + x) * 2);
+						if(value == DepthProjection.NO_DEPTH) continue;
+						if(tables) {
+							sum += projection.getVoxelX(x, value) + projection.getVoxelY(y, value) + projection.getVoxelZ(value);
+						}
+						else {
+							// the projection as it was done on every pixel before
+							double distance = 0.1236 * Math.tan(value / 2842.5 + 1.1863);
+							double world_x = (x - w / 2) * (distance - 10.0) * 0.00021;
+							double world_y = (y - h / 2) * (distance - 10.0) * 0.00021;
+							sum += (int) (world_x / 0.025) + (int) (world_y / 0.025) + (int) (distance / 0.025);
+						}
+					}
+				}
+				m_sink = sum;
+			}
+		};
+	}
+
+	private static Case createVoxelizeCase(final ByteBuffer[] frames, int parallelism) {
+		final TerrainExtractor extractor = new TerrainExtractor(parallelism);
+		return new Case("chunks voxelize depth frame " + parallelism + (parallelism > 1 ? " threads" : " thread")) {
+			private int m_frame = 0;
+
+			@Override
+			int getBatch() {
+				return 1;
+			}
+
+			@Override
+			void run() {
+				m_sink = extractor.voxelize(frames[m_frame++ % frames.length]).getChunks().size();
+			}
+		};
+	}
+
+	private static Case createNeighbourCase(final ByteBuffer[] frames) {
+		// the 26 neighbours of every voxel, like the ground cleaning
+		final ChunkManager chunks = new ChunkManager();
+		return new Case("chunks neighbour count") {
+			@Override
+			int getBatch() {
+				return 1;
+			}
+
+			@Override
+			void setUp() {
+				TerrainExtractor.voxelize(frames[0], chunks, 0, KinectWorker.FRAME_HEIGHT);
+			}
+
+			@Override
+			void run() {
+				int count = 0;
+				for(Chunk chunk : chunks.getChunks()) {
+					Vec3i origin = chunk.getOrigin();
+					for(int x = 0; x < 64; x++) {
+						for(int z = 0; z < 64; z++) {
+							long column = chunk.getColumn(x, z);
+							while(column != 0) {
+								int y = Long.numberOfTrailingZeros(column);
+								column &= column - 1;
+								int globalX = x + origin.getX() * 64;
+								int globalY = y + origin.getY() * 64;
+								int globalZ = z + origin.getZ() * 64;
+								for(int i = -1; i <= 1; i++) {
+									for(int j = -1; j <= 1; j++) {
+										for(int k = -1; k <= 1; k++) {
+											if((i != 0 || j != 0 || k != 0) && chunks.getBlock(globalX + i, globalY + j, globalZ + k))
+												count++;
+										}
+									}
+								}
+							}
+						}
+					}
+				}
+				m_sink = count;
+			}
+		};
+	}
+
+	private static Case createFrameCase(final ByteBuffer[] frames) {
+		final KinectWorker worker = new KinectWorker(new LatencyHistogram(), 1);
+		return new Case("kinect depth frame") {
+			private int m_frame = 0;
+
+			@Override
+			int getBatch() {
+				return 1;
+			}
+
+			@Override
+			void run() {
+				worker.processFrame(frames[m_frame++ % frames.length]);
+			}
+		};
+	}
+
+	private static void runIsolation(final MobilityModule mobility) {
+		// gait ticks on a realtime thread while background modules block like slow serial reads
+		final JournalRecord record = createWalkingRecord(true, false);
+		prepareGait(mobility, WalkingGait.Ripple);
+
+		Module gait = new BenchmarkModule("gait", 1000000000.0 / TICK_PERIOD) {
+			@Override
+			public void tick(long tick, Time elapsedTime) {
+				mobility.replay(record);
+			}
+		};
+		gait.setSchedulingClass(Module.SCHEDULING_REALTIME);
+
+		ModuleManager manager = new ModuleManager();
+		manager.registerModule(gait);
+		for(int i = 0; i < 4; i++) {
+			manager.registerModule(new BenchmarkModule("blocking " + i, 10) {
+				@Override
+				public void tick(long tick, Time elapsedTime) {
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		System.out.println();
+		System.out.println(String.format("%-40s %12s %12s %12s %12s", "isolation", "jitter p50", "jitter p99", "jitter max", "overruns"));
+
+		manager.startModule(gait);
+		reportIsolation("gait alone", gait);
+
+		for(Module module : manager.getModules()) {
+			manager.startModule(module);
+		}
+		reportIsolation("gait with blocking background", gait);
+
+		manager.stop();
+	}
+
+	private static void reportIsolation(String name, Module module) {
+		// discard the first ticks of a phase
+		ModuleSchedule schedule = module.getSchedule();
+		sleep(ISOLATION_TIME / 10);
+		LatencyHistogram start = new LatencyHistogram();
+		schedule.getJitterHistogram().copyTo(start);
+		long overruns = schedule.getOverrunCount();
+
+		sleep(ISOLATION_TIME);
+		LatencyHistogram end = new LatencyHistogram();
+		schedule.getJitterHistogram().copyTo(end);
+
+		// only the ticks of this phase
+		end.subtract(start);
+
+		System.out.println(String.format("%-40s %9.3f ms %9.3f ms %9.3f ms %12d", name,
+				end.getValueAtPercentile(50) / 1000000.0, end.getValueAtPercentile(99) / 1000000.0, end.getMax() / 1000000.0,
+				schedule.getOverrunCount() - overruns));
+	}
+
+	private static void sleep(long nanos) {
+		try {
+			Thread.sleep(nanos / 1000000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static abstract class BenchmarkModule extends Module {
+		BenchmarkModule(String name, double rate) {
+			setName(name);
+			setTickRate(rate);
+		}
+
+		@Override
+		protected void onStart() {
+
+		}
+
+		@Override
+		protected void onStop() {
+
+		}
+
+		@Override
+		public void onDataReceived(ClientWorker client, NetPackage pack) {
+
+		}
+
+		@Override
+		public void onCmdReceived(ClientWorker client, String[] cmd) {
+
+		}
+
+		@Override
+		public void onClientDisconnected(ClientWorker client) {
+
+		}
+
+		@Override
+		public void onClientConnected(ClientWorker client) {
+
+		}
+	}
+}
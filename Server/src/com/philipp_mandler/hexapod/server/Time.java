@@ -1,11 +1,20 @@
 package com.philipp_mandler.hexapod.server;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Time {
 
+	// all instances ever created, the tick path must not add any
+	private final static AtomicLong m_created = new AtomicLong();
+
 	private long m_nanoseconds = 0;
 
 	public Time() {
+		m_created.incrementAndGet();
+	}
 
+	static long getCreatedCount() {
+		return m_created.get();
 	}
 
 	public void setNanoseconds(long nanoseconds) {
@@ -20,6 +29,14 @@ public class Time {
 		m_nanoseconds += time.m_nanoseconds;
 	}
 
+	public void addNanos(long nanoseconds) {
+		m_nanoseconds += nanoseconds;
+	}
+
+	public void reset() {
+		m_nanoseconds = 0;
+	}
+
 	public long getNanoseconds() {
 		return m_nanoseconds;
 	}
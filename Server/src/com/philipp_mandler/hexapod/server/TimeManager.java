@@ -1,49 +1,22 @@
 package com.philipp_mandler.hexapod.server;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TimeManager {
 
-	private ArrayList<TimeTracker> m_timeTracker = new ArrayList<>();
-	private boolean m_running = true;
+	private List<TimeTracker> m_timeTracker = new CopyOnWriteArrayList<>();
+	private MetricsRegistry m_metrics;
 	private int m_size;
 
-	public TimeManager(int size) {
+	public TimeManager(int size, MetricsRegistry metrics) {
+		// tracker results are exported through the metrics registry
 		m_size = size;
-
-		Thread thread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				while(m_running) {
-
-					String text = "";
-					for(TimeTracker tracker : m_timeTracker)  {
-						text += "Tracker: " + tracker.getName() + "    avg: " + tracker.getAverage(100).getNanoseconds() + "ns";
-
-						for(TimeTrackerAction a : tracker.getActions()) {
-							text += "\n\t" + a.getName() + "    avg: " + a.getAverage(100).getNanoseconds() + "ns";
-						}
-
-						text += "\n\n";
-					}
-
-					DebugHelper.log(text);
-
-					try {
-						Thread.sleep(5000);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
-			}
-		});
-
-		thread.start();
-
+		m_metrics = metrics;
 	}
 
 	public TimeTracker createTracker(String name) {
-		TimeTracker tracker = new TimeTracker(name, m_size);
+		TimeTracker tracker = new TimeTracker(name, m_size, m_metrics);
 		m_timeTracker.add(tracker);
 		return tracker;
 	}
@@ -52,7 +25,33 @@ public class TimeManager {
 		m_timeTracker.remove(tracker);
 	}
 
+	public List<TimeTracker> getTrackers() {
+		return m_timeTracker;
+	}
+
+	public String getSummary() {
+		// readable summary for the console
+		String text = "";
+		for(TimeTracker tracker : m_timeTracker)  {
+			text += "Tracker: " + tracker.getName() + "    avg: " + tracker.getAverage(100).getNanoseconds() + "ns" + percentiles(tracker.getHistogram());
+
+			for(TimeTrackerAction a : tracker.getActions()) {
+				text += "\n\t" + a.getName() + "    avg: " + a.getAverage(100).getNanoseconds() + "ns" + percentiles(a.getHistogram());
+			}
+
+			text += "\n\n";
+		}
+		return text;
+	}
+
+	private static String percentiles(LatencyHistogram histogram) {
+		return "    p50: " + histogram.getValueAtPercentile(50) + "ns"
+				+ "    p99: " + histogram.getValueAtPercentile(99) + "ns"
+				+ "    p999: " + histogram.getValueAtPercentile(99.9) + "ns"
+				+ "    max: " + histogram.getMax() + "ns";
+	}
+
 	public void stop() {
-		m_running = false;
+
 	}
 }
@@ -2,66 +2,68 @@ package com.philipp_mandler.hexapod.server;
 
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TimeTracker {
 
 	private String m_name;
-	private List<TimeTrackerEntry> m_entries = new CopyOnWriteArrayList<>();
+	private TimeTrackerAction m_total;
 	private List<TimeTrackerAction> m_actions = new CopyOnWriteArrayList<>();
+	private Map<String, TimeTrackerAction> m_actionsByName = new ConcurrentHashMap<>();
 	private long m_tick = 0;
-	private boolean m_running = false;
-	private Time m_startTime;
 	private int m_size;
+	private MetricsRegistry m_metrics;
 
 	public TimeTracker(String name, int size) {
+		this(name, size, null);
+	}
+
+	public TimeTracker(String name, int size, MetricsRegistry metrics) {
 		m_size = size;
 		m_name = name;
+		m_metrics = metrics;
+		m_total = new TimeTrackerAction(name, size);
+		registerMetric(m_total, "total");
+	}
+
+	private void registerMetric(TimeTrackerAction action, String actionName) {
+		if(m_metrics != null)
+			m_metrics.histogram("hexapod_tracker_duration_seconds", "tracker=\"" + m_name + "\",action=\"" + actionName + "\"", "Duration of tracked code sections.", action.getHistogram());
 	}
 
 	public TimeTrackerAction trackAction(String action) {
-		for(TimeTrackerAction a : m_actions) {
-			if(action.equals(a.getName())) {
-				a.startTracking(m_tick);
-				return a;
-			}
+		TimeTrackerAction a = m_actionsByName.get(action);
+		if(a == null) {
+			a = new TimeTrackerAction(action, m_size);
+			m_actionsByName.put(action, a);
+			m_actions.add(a);
+			registerMetric(a, action);
 		}
-
-		TimeTrackerAction a = new TimeTrackerAction(action, m_size);
-		m_actions.add(a);
 		a.startTracking(m_tick);
 		return a;
 	}
 
 	public void startTracking(long tick) {
 		m_tick = tick;
-		m_startTime = Time.fromNanoseconds(System.nanoTime());
-		m_running = true;
+		m_total.startTracking(tick);
 	}
 
-	public TimeTrackerEntry stopTracking() {
-		if(m_running) {
-			TimeTrackerEntry entry = new TimeTrackerEntry(m_tick, m_startTime, Time.fromNanoseconds(System.nanoTime()));
-			m_entries.add(0, entry);
-			while(m_entries.size() > m_size) {
-				m_entries.remove(m_entries.size() - 1);
-			}
-			m_running = false;
-			return entry;
-		}
-		return null;
+	public long stopTracking() {
+		return m_total.stopTracking();
 	}
 
 	public Time getAverage(int size) {
-		int count = 0;
-		double value = 0;
-		for(TimeTrackerEntry entry : m_entries) {
-			value += entry.getDuration().getNanoseconds();
-			count++;
-			if(count >= size) break;
-		}
-		if(count == 0) return Time.fromNanoseconds(0);
-		return Time.fromNanoseconds(Math.round(value / count));
+		return m_total.getAverage(size);
+	}
+
+	public LatencyHistogram getHistogram() {
+		return m_total.getHistogram();
+	}
+
+	public TimeTrackerAction getTotal() {
+		return m_total;
 	}
 
 	public List<TimeTrackerAction> getActions() {
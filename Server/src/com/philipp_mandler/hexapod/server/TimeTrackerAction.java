@@ -1,20 +1,23 @@
 package com.philipp_mandler.hexapod.server;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
 public class TimeTrackerAction {
 
 	private String m_name;
-	private Time m_startTime;
+	private long m_startTime;
 	private boolean m_running = false;
-	private List<TimeTrackerEntry> m_values = new CopyOnWriteArrayList<>();
 	private long m_tick = 0;
-	private int m_size;
+
+	// ring of the latest durations, written by the tracking thread only
+	private final long[] m_durations;
+	private final long[] m_ticks;
+	private volatile long m_count = 0;
+
+	private final LatencyHistogram m_histogram = new LatencyHistogram();
 
 	public TimeTrackerAction(String name, int size) {
 		m_name = name;
-		m_size = size;
+		m_durations = new long[size];
+		m_ticks = new long[size];
 	}
 
 	public String getName() {
@@ -23,37 +26,54 @@ public class TimeTrackerAction {
 
 	public void startTracking(long tick) {
 		m_tick = tick;
-		m_startTime = Time.fromNanoseconds(System.nanoTime());
+		m_startTime = System.nanoTime();
 		m_running = true;
 	}
 
-	public TimeTrackerEntry stopTracking() {
+	public long stopTracking() {
+		// returns the duration in nanoseconds, -1 if tracking wasn't started
 		if(m_running) {
-			TimeTrackerEntry entry = new TimeTrackerEntry(m_tick, m_startTime, Time.fromNanoseconds(System.nanoTime()));
-			m_values.add(0, entry);
-			while(m_values.size() > m_size) {
-				m_values.remove(m_values.size() - 1);
-			}
+			long duration = System.nanoTime() - m_startTime;
+			int index = (int) (m_count % m_durations.length);
+			m_durations[index] = duration;
+			m_ticks[index] = m_tick;
+			m_histogram.record(duration);
+			m_count++;
 			m_running = false;
-			return entry;
+			return duration;
 		}
-		return null;
+		return -1;
 	}
 
 	public Time getAverage(int size) {
-		int count = 0;
+		// average of the latest durations
+		long count = m_count;
+		int n = (int) Math.min(Math.min(size, count), m_durations.length);
+		if(n == 0) return Time.fromNanoseconds(0);
 		double value = 0;
-		for(TimeTrackerEntry entry : m_values) {
-			value += entry.getDuration().getNanoseconds();
-			count++;
-			if(count >= size) break;
+		for(int i = 1; i <= n; i++) {
+			value += m_durations[(int) ((count - i) % m_durations.length)];
 		}
-		if(count == 0) return Time.fromNanoseconds(0);
-		return Time.fromNanoseconds(Math.round(value / count));
+		return Time.fromNanoseconds(Math.round(value / n));
+	}
+
+	public long getLastDuration() {
+		long count = m_count;
+		if(count == 0) return 0;
+		return m_durations[(int) ((count - 1) % m_durations.length)];
+	}
+
+	public long getLastTick() {
+		long count = m_count;
+		if(count == 0) return 0;
+		return m_ticks[(int) ((count - 1) % m_ticks.length)];
 	}
 
-	public List<TimeTrackerEntry> getEntries() {
-		return m_values;
+	public long getCount() {
+		return m_count;
 	}
 
+	public LatencyHistogram getHistogram() {
+		return m_histogram;
+	}
 }
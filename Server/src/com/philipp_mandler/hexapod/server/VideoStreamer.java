@@ -69,7 +69,7 @@ public class VideoStreamer implements VideoHandler {
 		m_elapsedTime.add(elapsedTime);
 		if(m_elapsedTime.getSeconds() > 0.2) {
 			m_send.set(true);
-			m_elapsedTime.setNanoseconds(0);
+			m_elapsedTime.reset();
 		}
 	}
 }
@@ -5,16 +5,22 @@ import com.philipp_mandler.hexapod.hexapod.net.NetPackage;
 import com.philipp_mandler.hexapod.hexapod.orientation.BooleanMapManager;
 import org.openkinect.freenect.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public class VisionModule extends Module implements DepthHandler {
 
+	// the depth frame is voxelized on two cores, the others are left to the gait and the servo bus
+	private final static int VOXELIZE_THREADS = 2;
+
 	private SingleServo m_servoRotate = Main.getActuatorManager().getKinectServo(0);
 	private SingleServo m_servoTilt = Main.getActuatorManager().getKinectServo(1);
 
 	private Device m_kinect;
 
 	private KinectWorker m_kinectWorker;
+	private final LatencyHistogram m_frameTime = new LatencyHistogram();
 
 	private VideoStreamer m_videoStreamer;
 
@@ -33,8 +39,10 @@ public class VisionModule extends Module implements DepthHandler {
 
 	public VisionModule() {
 		super.setName("vision");
+		setTickRate(30);
 
 		m_timeTracker = Main.getTimeManager().createTracker("vision");
+		Main.getMetrics().histogram("hexapod_kinect_frame_duration_seconds", null, "Processing time of a depth frame.", m_frameTime);
 
 		m_buttonGroup = new ButtonGroup(getName(), "Vision Module");
 		m_buttonGroup.addButton(new Button("left", "Left", getName() + " left"));
@@ -50,7 +58,7 @@ public class VisionModule extends Module implements DepthHandler {
 
 		m_kinect = Main.getSensorManager().getKinect();
 
-		m_kinectWorker = new KinectWorker();
+		m_kinectWorker = new KinectWorker(m_frameTime, VOXELIZE_THREADS);
 		m_kinectWorker.start();
 
 		m_videoStreamer = new VideoStreamer();
@@ -63,14 +71,12 @@ public class VisionModule extends Module implements DepthHandler {
 			m_kinect.startVideo(m_videoStreamer);
 		}
 
-		Main.getNetworking().addEventListener(this);
 		Main.getNetworking().addButtonGroup(m_buttonGroup);
 	}
 
 	@Override
 	protected void onStop() {
 		Main.getNetworking().removeButtonGroup(m_buttonGroup);
-		Main.getNetworking().removeEventListener(this);
 
 		m_kinectWorker.end();
 		m_servoUpdater.shutdown();
@@ -117,6 +123,20 @@ public class VisionModule extends Module implements DepthHandler {
 				else if(cmd[1].toLowerCase().equals("left")) {
 					setRoation(m_rotationGoal + 0.2);
 				}
+				else if(cmd[1].toLowerCase().equals("save")) {
+					// raw depth frames for the benchmark
+					if(cmd.length > 2 && m_kinectWorker != null) {
+						try {
+							m_kinectWorker.saveFrame(new File(cmd[2]));
+							DebugHelper.log("Depth frame saved to " + cmd[2] + ".");
+						} catch (IOException e) {
+							DebugHelper.log("Depth frame couldn't be saved: " + e.getMessage(), Log.WARNING);
+						}
+					}
+					else {
+						DebugHelper.log("Syntax: " + getName() + " save <file>");
+					}
+				}
 			}
 		}
 	}
@@ -141,6 +161,10 @@ public class VisionModule extends Module implements DepthHandler {
 			m_kinectWorker.setKinectData(byteBuffer);
 	}
 
+	public LatencyHistogram getFrameTime() {
+		return m_frameTime;
+	}
+
 	public double getRotation() {
 		return m_rotationGoal;
 	}
@@ -5,7 +5,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Created by philipp on 22.05.14.
  */
-public class VisionServoUpdater extends Thread {
+public class VisionServoUpdater implements BusCycleListener {
 
 	private SingleServo m_servoRotate;
 	private SingleServo m_servoTilt;
@@ -13,26 +13,20 @@ public class VisionServoUpdater extends Thread {
 	private AtomicInteger m_rotation = new AtomicInteger();
 	private AtomicInteger m_tilt = new AtomicInteger();
 
-	private boolean m_running = false;
-
 	public VisionServoUpdater(SingleServo rotate, SingleServo tilt) {
 		m_servoRotate = rotate;
 		m_servoTilt = tilt;
 	}
 
+	public void start() {
+		// the goal positions go out with the sync write of the bus scheduler
+		Main.getActuatorManager().getBusScheduler().addCycleListener(this);
+	}
+
 	@Override
-	public void run() {
-		m_running = true;
-		while(m_running) {
-
-			if(m_servoRotate.isConnected()) m_servoRotate.setGoalPosition(Math.PI + (m_rotation.get() / 4096.0));
-			if(m_servoTilt.isConnected()) m_servoTilt.setGoalPosition(Math.PI + (m_tilt.get() / 4096.0));
-			try {
-				Thread.sleep(5);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
+	public void onBusCycle(long cycle) {
+		if(m_servoRotate.isConnected()) m_servoRotate.setGoalPosition(Math.PI + (m_rotation.get() / 4096.0));
+		if(m_servoTilt.isConnected()) m_servoTilt.setGoalPosition(Math.PI + (m_tilt.get() / 4096.0));
 	}
 
 	public void setTilt(double tilt) {
@@ -44,6 +38,6 @@ public class VisionServoUpdater extends Thread {
 	}
 
 	public void shutdown() {
-		m_running = false;
+		Main.getActuatorManager().getBusScheduler().removeCycleListener(this);
 	}
 }